@@ -0,0 +1,67 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.DisplayMetrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The query URLs built by {@link StoryQueries} with the page sizes of the
+ * {@link StoryQueryShaper}, which must not change when the device rotates.
+ * <p>
+ * Run on a device with {@code ./gradlew :app:connectedAndroidTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StoryQueryShaperTest {
+
+    @Test
+    public void selectedSectionUrlIsTheSameInBothOrientations() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        assertEquals(StoryQueries.getSelectedSectionUrl(rotated(context, false)),
+                StoryQueries.getSelectedSectionUrl(rotated(context, true)));
+    }
+
+    @Test
+    public void pageSizeIsTheSameInBothOrientations() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        for (int queries = 1; queries <= 4; queries++) {
+            assertEquals(StoryQueryShaper.getPageSize(rotated(context, false), queries),
+                    StoryQueryShaper.getPageSize(rotated(context, true), queries));
+        }
+    }
+
+    /**
+     * Return a context whose screen is the one of the given context, turned to landscape or to
+     * portrait.
+     */
+    @SuppressWarnings("deprecation")
+    private static Context rotated(Context context, boolean landscape) {
+        Resources resources = context.getResources();
+        DisplayMetrics metrics = new DisplayMetrics();
+        metrics.setTo(resources.getDisplayMetrics());
+        int shortSide = Math.min(metrics.widthPixels, metrics.heightPixels);
+        int longSide = Math.max(metrics.widthPixels, metrics.heightPixels);
+        metrics.widthPixels = landscape ? longSide : shortSide;
+        metrics.heightPixels = landscape ? shortSide : longSide;
+
+        Configuration configuration = new Configuration(resources.getConfiguration());
+        configuration.orientation = landscape
+                ? Configuration.ORIENTATION_LANDSCAPE : Configuration.ORIENTATION_PORTRAIT;
+        final Resources rotatedResources =
+                new Resources(resources.getAssets(), metrics, configuration);
+        return new ContextWrapper(context) {
+            @Override
+            public Resources getResources() {
+                return rotatedResources;
+            }
+        };
+    }
+}
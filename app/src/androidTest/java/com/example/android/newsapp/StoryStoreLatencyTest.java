@@ -0,0 +1,134 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Latency of the queries and searches of a {@link StoryStore} that holds
+ * {@link StoryStore#MAX_STORIES} stories.
+ * <p>
+ * Run on a device with {@code ./gradlew :app:connectedAndroidTest}; the times are written to
+ * the log with the tag of this class.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StoryStoreLatencyTest {
+
+    private static final String LOG_TAG = StoryStoreLatencyTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "stories-latency-test.db";
+
+    private static final String[] SECTIONS = {"politics", "world", "sport", "culture", "science"};
+    private static final String[] WORDS = {"election", "market", "climate", "final", "vote",
+            "storm", "budget", "festival", "orbit", "league"};
+
+    /**
+     * Number of stories stored in one transaction, and number of stories read at once
+     */
+    private static final int STORE_PAGE_SIZE = 500;
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Number of timed runs of each query, and the average time one may take at most
+     */
+    private static final int RUNS = 50;
+    private static final long MAX_AVERAGE_MILLIS = 100;
+
+    private Context mContext;
+    private StoryStore mStore;
+
+    @Before
+    public void fillStore() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mStore = new StoryStore(mContext, DATABASE_NAME, StoryStore.MAX_STORIES);
+
+        // One story a minute, newest first, round robin over the sections
+        long newest = System.currentTimeMillis();
+        Story newer = null;
+        for (int first = 0; first < StoryStore.MAX_STORIES; first += STORE_PAGE_SIZE) {
+            ArrayList<Story> stories = new ArrayList<>(STORE_PAGE_SIZE);
+            for (int i = first; i < first + STORE_PAGE_SIZE; i++) {
+                String section = SECTIONS[i % SECTIONS.length];
+                stories.add(new Story(WORDS[i % WORDS.length] + " " + WORDS[i / 7 % WORDS.length]
+                        + " " + i, new String[]{"Author " + i % 300}, newest - i * 60000L,
+                        "https://www.theguardian.com/" + section + "/" + i, section, section,
+                        null));
+            }
+            mStore.putPage("https://content.guardianapis.com/search",
+                    new StoryPage(stories, 1, 1), newer);
+            newer = stories.get(stories.size() - 1);
+        }
+    }
+
+    @After
+    public void deleteStore() {
+        mStore.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void firstPageOfAllSections() {
+        final StoryStore.Query query = new StoryStore.Query(null, Long.MAX_VALUE);
+        measure("first page of all sections", new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(PAGE_SIZE, mStore.query(query, null, PAGE_SIZE).size());
+            }
+        });
+    }
+
+    @Test
+    public void deepPageOfSection() {
+        final StoryStore.Query query = new StoryStore.Query("politics", Long.MAX_VALUE);
+        List<Story> stories = mStore.query(query, null, StoryStore.MAX_STORIES / 10 * 8
+                / SECTIONS.length);
+        final Story after = stories.get(stories.size() - 1);
+        measure("page of a section after 80% of it", new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(PAGE_SIZE, mStore.query(query, after, PAGE_SIZE).size());
+            }
+        });
+    }
+
+    @Test
+    public void searchByPrefix() {
+        measure("search by prefix", new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(PAGE_SIZE, mStore.search("ele vo", PAGE_SIZE).size());
+            }
+        });
+    }
+
+    /**
+     * Run the given query a number of times after a warm up run, log the average time and
+     * check that it is below the limit.
+     */
+    private static void measure(String name, Runnable query) {
+        query.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            query.run();
+        }
+        double averageMillis = (System.nanoTime() - start) / 1e6 / RUNS;
+        Log.i(LOG_TAG, String.format(Locale.US, "%s of %d stories: %.2f ms",
+                name, StoryStore.MAX_STORIES, averageMillis));
+        assertTrue(name + " took " + averageMillis + " ms",
+                averageMillis < MAX_AVERAGE_MILLIS);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+/**
+ * {@link IngestLog.Logger} that writes the messages of the story ingestion to the Android log.
+ */
+public class AndroidLogger implements IngestLog.Logger {
+
+    @Override
+    public void e(String tag, String message, Throwable throwable) {
+        Log.e(tag, message, throwable);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.android.newsapp;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the loads of stories on a pool of background threads, the most urgent ones first.
+ * <p>
+ * Loads of what the user is looking at come before prefetches of what might be shown next,
+ * which come before the background sync. Loads of the same priority run in the order they were
+ * submitted. Every load has a {@link CancellationToken}; cancelling a waiting load removes it
+ * from the queue and cancelling a running load stops its request and parse.
+ */
+public final class LoadExecutor {
+
+    /* Priorities of the loads, lower values run first */
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_PREFETCH = 1;
+    public static final int PRIORITY_BACKGROUND = 2;
+
+    /**
+     * Default number of loads that run at the same time
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Time after which idle threads end
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static LoadExecutor sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+
+    /* Order of submission of the loads */
+    private final AtomicLong mSequence = new AtomicLong();
+
+    /**
+     * Constructs a new {@link LoadExecutor}.
+     *
+     * @param threads is the number of loads that run at the same time
+     */
+    public LoadExecutor(int threads) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "StoryLoad-" + threadCount.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Return the process wide {@link LoadExecutor}.
+     */
+    public static synchronized LoadExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new LoadExecutor(DEFAULT_THREADS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Run the given load with the given priority. It is not run if the token is cancelled
+     * before its turn.
+     */
+    public void execute(int priority, CancellationToken token, Runnable load) {
+        final LoadTask task = new LoadTask(priority, mSequence.getAndIncrement(), token, load);
+        task.mRegistration = token.addOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                mExecutor.remove(task);
+            }
+        });
+        if (!token.isCanceled()) {
+            mExecutor.execute(task);
+        }
+    }
+
+    /**
+     * A load in the queue, ordered by priority and then by submission.
+     */
+    private static final class LoadTask implements Runnable, Comparable<LoadTask> {
+
+        private final int mPriority;
+        private final long mSequence;
+        private final CancellationToken mToken;
+        private final Runnable mLoad;
+
+        /* Takes the task out of the queue on cancellation, only needed until it runs */
+        CancellationToken.Registration mRegistration;
+
+        LoadTask(int priority, long sequence, CancellationToken token, Runnable load) {
+            mPriority = priority;
+            mSequence = sequence;
+            mToken = token;
+            mLoad = load;
+        }
+
+        @Override
+        public void run() {
+            mRegistration.unregister();
+            if (!mToken.isCanceled()) {
+                mLoad.run();
+            }
+        }
+
+        @Override
+        public int compareTo(LoadTask other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+}
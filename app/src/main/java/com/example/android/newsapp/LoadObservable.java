@@ -0,0 +1,155 @@
+package com.example.android.newsapp;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the latest result of a load and hands it to observers that are tied to the lifecycle
+ * of an activity.
+ * <p>
+ * An observer only gets values while its activity is started. The latest value is handed to it
+ * when its activity starts, if it has not seen it yet, and it is removed when its activity is
+ * destroyed, so the activity never has to unregister it. All methods have to be called on the
+ * main thread.
+ */
+public class LoadObservable<T> {
+
+    /**
+     * Receives the values of a {@link LoadObservable}.
+     */
+    public interface Observer<T> {
+        void onChanged(T value);
+    }
+
+    private final List<Binding> mBindings = new ArrayList<>();
+
+    private T mValue;
+
+    /* Number of the latest value, 0 if no value has been set */
+    private int mVersion;
+
+    /* Number of observers whose activity is started */
+    private int mActiveCount;
+
+    /**
+     * Hand the values to the given observer while the given activity is started.
+     */
+    public void observe(Activity owner, Observer<T> observer) {
+        Binding binding = new Binding(owner, observer);
+        mBindings.add(binding);
+        owner.getApplication().registerActivityLifecycleCallbacks(binding);
+    }
+
+    /**
+     * Set the value and hand it to the observers whose activity is started.
+     */
+    public void setValue(T value) {
+        mValue = value;
+        mVersion++;
+        for (Binding binding : new ArrayList<>(mBindings)) {
+            binding.dispatch();
+        }
+    }
+
+    public T getValue() {
+        return mValue;
+    }
+
+    public boolean hasActiveObservers() {
+        return mActiveCount > 0;
+    }
+
+    /**
+     * Called when the first observer becomes active.
+     */
+    protected void onActive() {
+    }
+
+    /**
+     * Called when the last active observer becomes inactive or is removed.
+     */
+    protected void onInactive() {
+    }
+
+    private void changeActiveCount(int delta) {
+        boolean wasActive = mActiveCount > 0;
+        mActiveCount += delta;
+        if (!wasActive && mActiveCount > 0) {
+            onActive();
+        } else if (wasActive && mActiveCount == 0) {
+            onInactive();
+        }
+    }
+
+    /**
+     * An observer together with the lifecycle of its activity.
+     */
+    private final class Binding implements Application.ActivityLifecycleCallbacks {
+
+        private final Activity mOwner;
+        private final Observer<T> mObserver;
+        private boolean mActive;
+        private int mSeenVersion;
+
+        Binding(Activity owner, Observer<T> observer) {
+            mOwner = owner;
+            mObserver = observer;
+        }
+
+        void dispatch() {
+            if (mActive && mSeenVersion != mVersion) {
+                mSeenVersion = mVersion;
+                mObserver.onChanged(mValue);
+            }
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            if (activity != mOwner || mActive) {
+                return;
+            }
+            mActive = true;
+            changeActiveCount(1);
+            dispatch();
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            if (activity != mOwner || !mActive) {
+                return;
+            }
+            mActive = false;
+            changeActiveCount(-1);
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            if (activity != mOwner) {
+                return;
+            }
+            onActivityStopped(activity);
+            mBindings.remove(this);
+            mOwner.getApplication().unregisterActivityLifecycleCallbacks(this);
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+    }
+}
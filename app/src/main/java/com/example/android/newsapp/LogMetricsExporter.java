@@ -0,0 +1,100 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link Metrics.Exporter} that sums up the measurements of each stage and writes every
+ * measurement with the running average of its stage to the debug log.
+ */
+public class LogMetricsExporter implements Metrics.Exporter {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = "Metrics";
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /* Sums of the timers and values of the counters, by name */
+    private final HashMap<String, Timer> mTimers = new HashMap<>();
+    private final HashMap<String, Long> mCounts = new HashMap<>();
+
+    @Override
+    public void onTiming(String name, long durationNanos, long units) {
+        double averageMillis;
+        long count;
+        synchronized (this) {
+            Timer timer = mTimers.get(name);
+            if (timer == null) {
+                timer = new Timer();
+                mTimers.put(name, timer);
+            }
+            timer.add(durationNanos, units);
+            averageMillis = timer.getAverageMillis();
+            count = timer.mCount;
+        }
+        String message = String.format(Locale.US, "%s %.2f ms, average %.2f ms of %d",
+                name, durationNanos / NANOS_PER_MILLI, averageMillis, count);
+        if (units > 0) {
+            message += String.format(Locale.US, ", %d units, %.4f ms each", units,
+                    durationNanos / NANOS_PER_MILLI / units);
+        }
+        Log.d(LOG_TAG, message);
+    }
+
+    @Override
+    public synchronized void onCount(String name, long delta) {
+        Long count = mCounts.get(name);
+        mCounts.put(name, count == null ? delta : count + delta);
+    }
+
+    /**
+     * Write the sums of all timers and counters to the debug log.
+     */
+    public synchronized void logSummary() {
+        for (Map.Entry<String, Timer> entry : mTimers.entrySet()) {
+            Timer timer = entry.getValue();
+            Log.d(LOG_TAG, String.format(Locale.US,
+                    "%s: %d times, average %.2f ms, max %.2f ms, %d units",
+                    entry.getKey(), timer.mCount, timer.getAverageMillis(),
+                    timer.mMaxNanos / NANOS_PER_MILLI, timer.mUnits));
+        }
+        for (Map.Entry<String, Long> entry : mCounts.entrySet()) {
+            Log.d(LOG_TAG, entry.getKey() + ": " + entry.getValue());
+        }
+
+        // Size of the responses for each story they brought, to compare query shapes
+        Long bytes = mCounts.get(Metrics.PAYLOAD_BYTES);
+        Long stories = mCounts.get(Metrics.PAYLOAD_STORIES);
+        if (bytes != null && stories != null && stories > 0) {
+            Log.d(LOG_TAG, String.format(Locale.US, "payload: %.0f bytes per story",
+                    (double) bytes / stories));
+        }
+    }
+
+    /**
+     * Sum of the measurements of one timer.
+     */
+    private static final class Timer {
+
+        private long mCount;
+        private long mTotalNanos;
+        private long mMaxNanos;
+        private long mUnits;
+
+        void add(long durationNanos, long units) {
+            mCount++;
+            mTotalNanos += durationNanos;
+            mMaxNanos = Math.max(mMaxNanos, durationNanos);
+            mUnits += units;
+        }
+
+        double getAverageMillis() {
+            return mTotalNanos / NANOS_PER_MILLI / mCount;
+        }
+    }
+}
@@ -15,48 +15,31 @@
  */
 package com.example.android.newsapp;
 
-import android.app.LoaderManager;
-import android.app.LoaderManager.LoaderCallbacks;
-import android.content.Context;
 import android.content.Intent;
-import android.content.Loader;
-import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
-import android.util.Log;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 public class NewsActivity extends AppCompatActivity
-        implements LoaderCallbacks<List<Story>> {
+        implements LoadObservable.Observer<List<StoryRow>>, StoryLoader.OnStoryBatchListener,
+        StoryAdapter.OnStoryClickListener, StorySearch.OnSearchResultsListener {
 
     private static final String LOG_TAG = NewsActivity.class.getName();
 
-    /**
-     * URL for earthquake data from the USGS dataset
-     */
-    private static final String NEWS_REQUEST_URL =
-            "https://content.guardianapis.com/search";
-
     private static final String NEWS_REQUEST_TEST_URL =
             "http://content.guardianapis.com/search?section=politics&api-key=test&show-tags=contributor&show-fields=thumbnail";
 
-    /**
-     * Constant value for the earthquake loader ID. We can choose any integer.
-     * This really only comes into play if you're using multiple loaders.
-     */
-    private static final int NEWS_LOADER_ID = 1;
 
     /**
      * Adapter for the list of earthquakes
@@ -68,143 +51,287 @@ public class NewsActivity extends AppCompatActivity
      */
     private TextView mEmptyStateTextView;
 
+    /**
+     * Loader of the stories, kept over configuration changes
+     */
+    private RowLoader mLoader;
+
+    /**
+     * Search of the stored stories, shown in place of the loaded ones while the search is open
+     */
+    private StorySearch mStorySearch;
+    private boolean mSearching;
+
+    /**
+     * Rows of the loader, kept to be shown again when the search is closed
+     */
+    private List<StoryRow> mLoaderRows;
+
+    /**
+     * Number of rows left below the visible ones at which the next page is requested,
+     * which depends on the connection
+     */
+    private int mRowsAhead;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.news_activity);
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView newsListView = (ListView) findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout
+        RecyclerView newsListView = (RecyclerView) findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        newsListView.setLayoutManager(layoutManager);
+        newsListView.addItemDecoration(
+                new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
 
         mEmptyStateTextView = (TextView) findViewById(R.id.empty_view);
-        newsListView.setEmptyView(mEmptyStateTextView);
 
-        // Create a new adapter that takes an empty list as input
-        mAdapter = new StoryAdapter(this, new ArrayList<Story>());
+        mStorySearch = new StorySearch(this, this);
 
-        // Set the adapter on the {@link ListView}
-        // so the list can be populated in the user interface
-        newsListView.setAdapter(mAdapter);
+        // Create a new adapter that starts without stories and opens the clicked ones
+        mAdapter = new StoryAdapter(this, this);
 
-        // Set an item click listener on the ListView, which sends an intent to a web browser
-        // to open a website with more information about the selected list item
-        newsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Show the empty view whenever the list has no items
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // Find the current item that was clicked on
-                Story currentStory = mAdapter.getItem(position);
-
-                // Convert the String URL into a URI object (to pass into the Intent constructor)
-                Uri storyUri = Uri.parse(currentStory.getUrl());
+            public void onChanged() {
+                updateEmptyView();
+            }
 
-                // Create a new intent to view the URI
-                Intent websiteIntent = new Intent(Intent.ACTION_VIEW, storyUri);
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
 
-                // Send the intent to launch a new activity
-                startActivity(websiteIntent);
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
             }
         });
 
-        // Get a reference to the ConnectivityManager to check state of network connectivity
-        ConnectivityManager connMgr = (ConnectivityManager)
-                getSystemService(Context.CONNECTIVITY_SERVICE);
+        // Set the adapter on the {@link RecyclerView}
+        // so the list can be populated in the user interface
+        newsListView.setAdapter(mAdapter);
 
-        // Get details on the currently active default data network
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        // Decode the thumbnails of the rows ahead of the scroll before they are shown
+        newsListView.addOnScrollListener(new ThumbnailPrefetcher(
+                ThumbnailLoader.getInstance(this), mAdapter, layoutManager));
 
-        // If there is a network connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+        // Load the next page ahead of time when the end of the list comes close,
+        // and read the dropped page before the kept ones again when the start comes close
+        newsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                StoryLoader loader = getStoryLoader();
+                if (mSearching || loader == null) {
+                    return;
+                }
+                int totalItemCount = layoutManager.getItemCount();
+                if (dy >= 0 && totalItemCount > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= totalItemCount - 1 - mRowsAhead) {
+                    loader.loadNextPage();
+                } else if (dy < 0 && layoutManager.findFirstVisibleItemPosition()
+                        <= mRowsAhead) {
+                    loader.loadPreviousPage();
+                }
+            }
+        });
 
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(NEWS_LOADER_ID, null, this);
-        } else {
-            // Otherwise, display error
-            // First, hide loading indicator so error message will be visible
-            View loadingIndicator = findViewById(R.id.loading_indicator);
-            loadingIndicator.setVisibility(View.GONE);
+        // Keep the stories of the chosen sections up to date in the background
+        StorySyncService.ensureScheduled(this);
 
-            // Update empty state with no connection error message
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
+        // Take over the loader of the activity before a configuration change, or create one.
+        // It starts loading once this activity is started.
+        // Without a network connection the loader still serves the cached stories.
+        mLoader = (RowLoader) getLastCustomNonConfigurationInstance();
+        if (mLoader == null) {
+            mLoader = createLoader();
         }
+        observeLoader();
     }
 
     @Override
-    public Loader<List<Story>> onCreateLoader(int i, Bundle bundle) {
+    protected void onStart() {
+        super.onStart();
 
+        // Load ahead as far as the current connection is worth it
+        mRowsAhead = StoryQueryShaper.getRowsAhead(this);
+    }
 
-        // Get the preferences
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String section = sharedPrefs.getString(
-                getString(R.string.settings_select_section_key),
-                getString(R.string.settings_select_section_default));
+    @Override
+    protected void onRestart() {
+        super.onRestart();
+
+        // Load the sections that have been chosen in the settings in the meantime
+        if (!new HashSet<>(StoryQueries.getQueryUrls(this))
+                .equals(new HashSet<>(mLoader.getQueryUrls()))) {
+            mLoader.destroy();
+            mLoader = createLoader();
+            observeLoader();
+        }
+    }
 
-        String maxDate = sharedPrefs.getString(
-                getString(R.string.settings_max_date_key),
-                getString(R.string.settings_max_date_default)
-        );
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return mLoader;
+    }
 
+    /**
+     * Return a new loader of the sections chosen in the settings.
+     */
+    private RowLoader createLoader() {
 
-        // Start building the URL with the base URL
-        Uri baseUri = Uri.parse(NEWS_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+        // Follow several sections at once if any are selected
+        List<String> followedSectionUrls = StoryQueries.getFollowedSectionUrls(this);
+        if (!followedSectionUrls.isEmpty()) {
+            return new SectionFanOutLoader(this, followedSectionUrls);
+        }
 
+        // Create a new loader for the URL of the selected section
+        return new StoryLoader(this, StoryQueries.getSelectedSectionUrl(this));
+    }
 
-        // Build URL with the preferences
-        // API Key
-        uriBuilder.appendQueryParameter("api-key", "test");
-        // Show article thumbnail field
-        uriBuilder.appendQueryParameter("show-fields", "thumbnail");
-        // Show contributors / authors field
-        uriBuilder.appendQueryParameter("show-tags", "contributor");
-        // Which section
-        if (!section.isEmpty()) {
-            uriBuilder.appendQueryParameter("section", section);
-        }
-        // From which minimum date
-        if (!maxDate.isEmpty()) {
-            uriBuilder.appendQueryParameter("to-date", maxDate);
+    /**
+     * Show the rows of the loader while this activity is started.
+     */
+    private void observeLoader() {
+        mLoader.getRows().observe(this, this);
+        StoryLoader loader = getStoryLoader();
+        if (loader != null) {
+            loader.setOnStoryBatchListener(this);
         }
+    }
 
-        Log.e(LOG_TAG, "This is the query URL after building: " + uriBuilder.toString());
-
+    @Override
+    public void onChanged(List<StoryRow> rows) {
+        // Hide loading indicator because the data has been loaded
+        View loadingIndicator = findViewById(R.id.loading_indicator);
+        loadingIndicator.setVisibility(View.GONE);
 
-        // Create a new loader for the given URL
-        return new StoryLoader(this, uriBuilder.toString());
+        if (QueryUtils.isUpstreamFailing()) {
+            // The guardian fails or limits the requests, tell that apart from an empty result
+            mEmptyStateTextView.setText(R.string.guardian_unavailable);
+        } else if (StoryLoader.isConnected(this)) {
+            // Set empty state text to display "No stories found."
+            mEmptyStateTextView.setText(R.string.no_stories);
+        } else {
+            // Update empty state with no connection error message
+            mEmptyStateTextView.setText(R.string.no_internet_connection);
+        }
 
+        // Replace the shown rows. Only the rows that changed are bound again, so the batches
+        // of the page that are already shown and the scroll position stay as they are.
+        mLoaderRows = rows;
+        if (!mSearching) {
+            mAdapter.submitRows(rows);
+        }
     }
 
     @Override
-    public void onLoadFinished(Loader<List<Story>> loader, List<Story> stories) {
-        // Hide loading indicator because the data has been loaded
+    public void onStoryBatch(List<StoryRow> batch) {
+        // Show the first stories as soon as they are there
         View loadingIndicator = findViewById(R.id.loading_indicator);
         loadingIndicator.setVisibility(View.GONE);
 
-        // Set empty state text to display "No stories found."
-        mEmptyStateTextView.setText(R.string.no_stories);
-
-        // Clear the adapter of previous data
-        mAdapter.clear();
+        // The batches are part of the rows delivered when the page is done
+        if (!mSearching) {
+            mAdapter.appendRows(batch);
+        }
+    }
 
-        // If there is a valid list of {@link Story}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (stories != null && !stories.isEmpty()) {
-            mAdapter.addAll(stories);
+    @Override
+    public void onSearchResults(List<StoryRow> rows) {
+        if (mSearching) {
+            mAdapter.submitRows(rows);
         }
     }
 
     @Override
-    public void onLoaderReset(Loader<List<Story>> loader) {
-        // Loader reset, so we can clear out our existing data.
-        mAdapter.clear();
+    public void onStoryClick(StoryRow row) {
+        // Convert the String URL into a URI object (to pass into the Intent constructor)
+        Uri storyUri = Uri.parse(row.getUrl());
+
+        // Create a new intent to view the URI
+        Intent websiteIntent = new Intent(Intent.ACTION_VIEW, storyUri);
+
+        // Send the intent to launch a new activity
+        startActivity(websiteIntent);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mStorySearch.shutdown();
+        StoryLoader loader = getStoryLoader();
+        if (loader != null) {
+            loader.setOnStoryBatchListener(null);
+        }
+        // The loader goes on for the next activity after a configuration change
+        if (!isChangingConfigurations()) {
+            mLoader.destroy();
+        }
+    }
+
+    /**
+     * Return the {@link StoryLoader} of this activity, or null if it has not been created or
+     * several sections are loaded by a {@link SectionFanOutLoader}.
+     */
+    private StoryLoader getStoryLoader() {
+        return mLoader instanceof StoryLoader ? (StoryLoader) mLoader : null;
+    }
+
+    /**
+     * Show the empty view if the list has no items.
+     */
+    private void updateEmptyView() {
+        mEmptyStateTextView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+
+        // Search the stored stories while the user types
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (!mSearching) {
+                    return false;
+                }
+                if (newText.trim().isEmpty()) {
+                    // Show the loaded stories until there is something to search for
+                    mStorySearch.cancel();
+                    mAdapter.submitRows(mLoaderRows);
+                } else {
+                    mStorySearch.search(newText);
+                }
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                mSearching = true;
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                mSearching = false;
+                mStorySearch.cancel();
+                mAdapter.submitRows(mLoaderRows);
+                return true;
+            }
+        });
         return true;
     }
 
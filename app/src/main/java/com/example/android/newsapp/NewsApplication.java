@@ -0,0 +1,21 @@
+package com.example.android.newsapp;
+
+import android.app.Application;
+
+/**
+ * Connects the story ingestion, which runs on any JVM, to Android before any component of the
+ * app starts.
+ */
+public class NewsApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        IngestLog.setLogger(new AndroidLogger());
+
+        // Measure the stages of the story pipeline into the debug log of debug builds
+        if (BuildConfig.DEBUG) {
+            Metrics.setExporter(new LogMetricsExporter());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.List;
+
+/**
+ * Loads the {@link StoryRow}s of the story list on the {@link LoadExecutor} and hands them to
+ * the main thread through a {@link LoadObservable}.
+ * <p>
+ * A loader outlives configuration changes of its activity. It starts loading when the first
+ * observer of its rows is started. A new load cancels the one that is running, which stops its
+ * request and parse, so a superseded load never delivers its rows. The public methods have to
+ * be called on the main thread.
+ */
+public abstract class RowLoader {
+
+    /**
+     * Handler to pass the rows to the main thread
+     */
+    protected final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Executor of the loads
+     */
+    protected final LoadExecutor mExecutor;
+
+    private final Context mContext;
+
+    /**
+     * Rows delivered last, the loader starts when its first observer becomes active
+     */
+    private final LoadObservable<List<StoryRow>> mRows = new LoadObservable<List<StoryRow>>() {
+        @Override
+        protected void onActive() {
+            if (!mDestroyed) {
+                onStartLoading();
+            }
+        }
+    };
+
+    /* Token of the running load, null if no load is running */
+    private CancellationToken mToken;
+
+    /* Start time of the running load until its first rows are delivered, 0 if it is not measured */
+    private long mLoadStartNanos;
+
+    private boolean mDestroyed;
+
+    /**
+     * Constructs a new {@link RowLoader}.
+     *
+     * @param context  of the activity, only its application context is kept
+     * @param executor runs the loads
+     */
+    protected RowLoader(Context context, LoadExecutor executor) {
+        mContext = context.getApplicationContext();
+        mExecutor = executor;
+    }
+
+    /**
+     * Return the query URLs this loader loads.
+     */
+    public abstract List<String> getQueryUrls();
+
+    /**
+     * Called when the first observer of the rows is started, to load what is not fresh.
+     */
+    protected abstract void onStartLoading();
+
+    public LoadObservable<List<StoryRow>> getRows() {
+        return mRows;
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    /**
+     * Return true if a load is running right now.
+     */
+    public boolean isLoading() {
+        return mToken != null;
+    }
+
+    /**
+     * Cancel the running load, if any.
+     */
+    public void cancelLoad() {
+        if (mToken != null) {
+            mToken.cancel();
+            mToken = null;
+        }
+    }
+
+    /**
+     * Cancel the running load for good, the loader does not load or deliver anything any more.
+     */
+    public void destroy() {
+        mDestroyed = true;
+        cancelLoad();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * Cancel the running load and return the token of a new one.
+     */
+    protected CancellationToken startLoad() {
+        cancelLoad();
+        mToken = new CancellationToken();
+        mLoadStartNanos = Metrics.start();
+        return mToken;
+    }
+
+    /**
+     * Return true if the given token is the one of the running load. Only on the main thread.
+     */
+    protected boolean isCurrent(CancellationToken token) {
+        return token == mToken && !token.isCanceled();
+    }
+
+    /**
+     * Deliver the given rows of the load of the given token on the main thread, unless another
+     * load has started since. The load ends with its final rows.
+     */
+    protected void postResult(final CancellationToken token, final List<StoryRow> rows,
+                              final boolean finished) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCurrent(token)) {
+                    return;
+                }
+                if (finished) {
+                    mToken = null;
+                }
+                deliverResult(rows);
+            }
+        });
+    }
+
+    /**
+     * Hand the given rows to the observers. Only on the main thread.
+     */
+    protected void deliverResult(List<StoryRow> rows) {
+        if (mLoadStartNanos != 0) {
+            Metrics.stop(Metrics.LOADER_DELIVERY, mLoadStartNanos, rows != null ? rows.size() : 0);
+            mLoadStartNanos = 0;
+        }
+        mRows.setValue(rows);
+    }
+}
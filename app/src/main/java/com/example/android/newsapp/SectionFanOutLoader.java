@@ -0,0 +1,171 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Loads the first page of several sections at the same time and merges them into one list,
+ * ordered by date with the newest story first and without duplicate stories.
+ * <p>
+ * Every section is loaded by its own task on the {@link LoadExecutor}, all under the token of
+ * the load, so cancelling the load stops all of them. The merged list is delivered again every
+ * time a section has been loaded, so a slow section does not hold back the stories of the
+ * others. Like the {@link StoryLoader}, it delivers {@link StoryRow}s that are built on the
+ * loader threads.
+ */
+public class SectionFanOutLoader extends RowLoader {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = SectionFanOutLoader.class.getSimpleName();
+
+    /**
+     * Orders stories by date with the newest story first, stories without a date last
+     */
+    private static final Comparator<StoryRow> NEWEST_FIRST = new Comparator<StoryRow>() {
+        @Override
+        public int compare(StoryRow firstRow, StoryRow secondRow) {
+            Story first = firstRow.getStory();
+            Story second = secondRow.getStory();
+            if (!first.hasDate()) {
+                return second.hasDate() ? 1 : 0;
+            }
+            if (!second.hasDate()) {
+                return -1;
+            }
+            return Long.compare(second.getTimeInMillis(), first.getTimeInMillis());
+        }
+    };
+
+    /**
+     * Query URLs, one for each section
+     */
+    private final List<String> mUrls;
+
+    /**
+     * Constructs a new {@link SectionFanOutLoader}.
+     *
+     * @param context of the activity
+     * @param urls    to load data from, one for each section
+     */
+    public SectionFanOutLoader(Context context, List<String> urls) {
+        super(context, LoadExecutor.getInstance());
+        mUrls = urls;
+    }
+
+    @Override
+    public List<String> getQueryUrls() {
+        return mUrls;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        // There is nothing to load while the pages of all sections are still fresh,
+        // and a load that is still running goes on
+        if (isLoading() || getRows().getValue() != null && allFresh()) {
+            return;
+        }
+
+        final CancellationToken token = startLoad();
+        final Merger merger = new Merger(token, mUrls.size());
+        for (final String url : mUrls) {
+            mExecutor.execute(LoadExecutor.PRIORITY_VISIBLE, token, new Runnable() {
+                @Override
+                public void run() {
+                    StoryPage storyPage = null;
+                    try {
+                        storyPage = loadSection(url, token);
+                    } catch (RuntimeException e) {
+                        Log.e(LOG_TAG, "Problem loading a section", e);
+                    } finally {
+                        merger.add(storyPage);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Return true if the pages of all sections have been parsed a short time ago.
+     */
+    private boolean allFresh() {
+        for (String url : mUrls) {
+            if (!StoryLoader.isFresh(url)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the first page of the given section URL, taken from the {@link StoryMemoryCache}
+     * if it is fresh there. Otherwise the page is revalidated, and the cached page of the
+     * {@link StoryCache}, which the background sync keeps up to date, is used without a connection.
+     * This is on a background thread.
+     */
+    private StoryPage loadSection(String url, CancellationToken token) {
+        StoryMemoryCache memoryCache = StoryMemoryCache.getInstance();
+        StoryMemoryCache.Entry memoryEntry = memoryCache.get(url);
+        if (memoryEntry != null && memoryEntry.isFresh()) {
+            return memoryEntry.getStoryPage();
+        }
+
+        StoryCache cache = StoryCache.getInstance(getContext());
+        StoryPage cachedPage = memoryEntry != null ? memoryEntry.getStoryPage() : cache.get(url);
+        if (!StoryLoader.isConnected(getContext())) {
+            return cachedPage;
+        }
+
+        StoryPage storyPage = QueryUtils.fetchStoryPage(url, cachedPage, null, token);
+        if (storyPage == null) {
+            return cachedPage;
+        }
+        memoryCache.put(url, storyPage);
+        cache.put(url, storyPage);
+        StoryStore.getInstance(getContext()).putPage(url, storyPage, null);
+        return storyPage;
+    }
+
+    /**
+     * Merges the pages of the sections as they come in and delivers the merged rows.
+     */
+    private final class Merger {
+
+        private final CancellationToken mToken;
+        private final ArrayList<StoryRow> mMerged = new ArrayList<>();
+        private final HashSet<String> mStoryUrls = new HashSet<>();
+        private int mSectionsLeft;
+
+        Merger(CancellationToken token, int sections) {
+            mToken = token;
+            mSectionsLeft = sections;
+        }
+
+        synchronized void add(StoryPage storyPage) {
+            if (mToken.isCanceled()) {
+                return;
+            }
+            mSectionsLeft--;
+
+            // Add the stories of the section that no other section had
+            if (storyPage != null) {
+                for (Story story : storyPage.getStories()) {
+                    if (mStoryUrls.add(story.getUrl())) {
+                        mMerged.add(new StoryRow(story));
+                    }
+                }
+                Collections.sort(mMerged, NEWEST_FIRST);
+            }
+
+            // Show what we have while the other sections are loading
+            postResult(mToken, new ArrayList<>(mMerged), mSectionsLeft == 0);
+        }
+    }
+}
@@ -3,13 +3,16 @@ package com.example.android.newsapp;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.ListPreference;
+import android.preference.MultiSelectListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Set;
 
 public class SettingsActivity extends AppCompatActivity {
 
@@ -19,7 +22,8 @@ public class SettingsActivity extends AppCompatActivity {
         setContentView(R.layout.settings_activity);
     }
 
-    public static class PreferenceFragment extends android.preference.PreferenceFragment implements Preference.OnPreferenceChangeListener {
+    public static class PreferenceFragment extends android.preference.PreferenceFragment implements Preference.OnPreferenceChangeListener,
+            SharedPreferences.OnSharedPreferenceChangeListener {
 
         @Override
         public void onCreate(Bundle savedInstanceState) {
@@ -31,10 +35,60 @@ public class SettingsActivity extends AppCompatActivity {
 
             Preference selectSection = findPreference(getString(R.string.settings_select_section_key));
             bindPreferenceSummaryToValue(selectSection);
+
+            Preference syncInterval = findPreference(getString(R.string.settings_sync_interval_key));
+            bindPreferenceSummaryToValue(syncInterval);
+
+            Preference followSections = findPreference(getString(R.string.settings_follow_sections_key));
+            followSections.setOnPreferenceChangeListener(this);
+            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(getContext());
+            onPreferenceChange(followSections, preferences.getStringSet(
+                    followSections.getKey(), Collections.<String>emptySet()));
+        }
+
+        @Override
+        public void onResume() {
+            super.onResume();
+            getPreferenceScreen().getSharedPreferences().registerOnSharedPreferenceChangeListener(this);
+        }
+
+        @Override
+        public void onPause() {
+            getPreferenceScreen().getSharedPreferences().unregisterOnSharedPreferenceChangeListener(this);
+            super.onPause();
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            // Reschedule the background sync with the new interval and constraints
+            if (key.equals(getString(R.string.settings_sync_interval_key))
+                    || key.equals(getString(R.string.settings_sync_unmetered_key))
+                    || key.equals(getString(R.string.settings_sync_charging_key))) {
+                StorySyncService.schedule(getContext());
+            }
         }
 
         @Override
         public boolean onPreferenceChange(Preference preference, Object value) {
+            if (preference instanceof MultiSelectListPreference) {
+                MultiSelectListPreference multiSelectPreference = (MultiSelectListPreference) preference;
+                Set<?> values = (Set<?>) value;
+                StringBuilder summary = new StringBuilder();
+                CharSequence[] labels = multiSelectPreference.getEntries();
+                for (Object selected : values) {
+                    int prefIndex = multiSelectPreference.findIndexOfValue(selected.toString());
+                    if (prefIndex >= 0) {
+                        if (summary.length() > 0) {
+                            summary.append(", ");
+                        }
+                        summary.append(labels[prefIndex]);
+                    }
+                }
+                preference.setSummary(summary.length() > 0 ? summary.toString()
+                        : getString(R.string.settings_follow_sections_none));
+                return true;
+            }
+
             String stringValue = value.toString();
             if (preference instanceof ListPreference) {
                 ListPreference listPreference = (ListPreference) preference;
@@ -1,31 +1,36 @@
-
 package com.example.android.newsapp;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.squareup.picasso.Picasso;
-
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
 /**
  * An {@link StoryAdapter} knows how to create a list item layout for each item
- * in the data source (a list of {@link Story} objects).
+ * in the data source (a list of {@link StoryRow} objects).
+ * <p>
+ * These list item layouts will be provided to a RecyclerView to be displayed to the user.
+ * The rows hold all text ready for display, so binding a list item only sets final fields.
  * <p>
- * These list item layouts will be provided to an adapter view like ListView
- * to be displayed to the user.
+ * A new list of rows is compared with the shown one by {@link DiffUtil} on a background thread,
+ * and only the rows that were added, moved, removed or changed are bound again.
  */
-public class StoryAdapter extends ArrayAdapter<Story> {
+public class StoryAdapter extends RecyclerView.Adapter<StoryAdapter.ViewHolder> {
 
     /**
      * Tag for the log messages
@@ -33,84 +38,253 @@ public class StoryAdapter extends ArrayAdapter<Story> {
     private static final String LOG_TAG = StoryAdapter.class.getSimpleName();
 
     /**
-     * The part of the location string from the USGS service that we use to determine
-     * whether or not there is a location offset present ("5km N of Cairo, Egypt").
+     * Maximum number of unused list items kept for reuse
+     */
+    private static final int MAX_RECYCLED_VIEWS = 16;
+
+    /**
+     * Executor for the list comparisons, which must run one after the other
+     */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Receives clicks on the list items.
+     */
+    public interface OnStoryClickListener {
+        void onStoryClick(StoryRow row);
+    }
+
+    private final Context mContext;
+
+    private final OnStoryClickListener mClickListener;
+
+    private final ThumbnailLoader mThumbnailLoader;
+
+    /**
+     * Handler to apply the result of a list comparison on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Rows that are shown. They are never modified once they are shown, unless they are
+     * {@link #mAppendedRows}.
+     */
+    private List<StoryRow> mRows = Collections.emptyList();
+
+    /**
+     * Rows of this adapter that batches are appended to in place, null if the shown rows have
+     * been submitted
+     */
+    private ArrayList<StoryRow> mAppendedRows;
+
+    /**
+     * Rows of the last call of {@link #submitRows(List)}, shown once they have been compared
      */
-    private static final String LOCATION_SEPARATOR = " of ";
+    private List<StoryRow> mLatestRows = Collections.emptyList();
+
+    /**
+     * Number of lists submitted so far, to drop the comparisons that have been overtaken
+     */
+    private int mGeneration;
 
     /**
      * Constructs a new {@link StoryAdapter}.
      *
-     * @param context of the app
-     * @param stories is the list of stories, which is the data source of the adapter
+     * @param context       of the app
+     * @param clickListener receives clicks on the list items
      */
-    public StoryAdapter(Context context, List<Story> stories) {
-        super(context, 0, stories);
+    public StoryAdapter(Context context, OnStoryClickListener clickListener) {
+        mContext = context;
+        mClickListener = clickListener;
+        mThumbnailLoader = ThumbnailLoader.getInstance(context);
+        setHasStableIds(true);
     }
 
     /**
-     * Returns a list item view that displays information about the item at the given position
-     * in the list.
+     * Keep more unused list items than the default for reuse. The pool belongs to the list of
+     * the activity, so the list items never outlive it.
      */
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(0, MAX_RECYCLED_VIEWS);
+    }
 
-        // Find the item at the given position in the list
-        Story currentStory = getItem(position);
-
-        // Make a new ViewHolder
-        ViewHolder holder;
-
-        // Check if there is an existing list item view (called convertView) that we can reuse,
-        // otherwise, if convertView is null, then inflate a new list item layout.
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.story_list_item, parent, false);
-            holder = new ViewHolder(listItemView);
-            listItemView.setTag(holder);
+    /**
+     * Show the given rows, or no rows if it is null. Only the rows that differ from the
+     * shown ones are bound again, once the lists have been compared in the background.
+     */
+    public void submitRows(List<StoryRow> rows) {
+        final List<StoryRow> newRows = rows != null ? rows : Collections.<StoryRow>emptyList();
+        if (newRows == mLatestRows) {
+            return;
+        }
+        final int generation = ++mGeneration;
+        mLatestRows = newRows;
+        mAppendedRows = null;
+
+        // Without rows on one side there is nothing to compare
+        final List<StoryRow> oldRows = mRows;
+        if (oldRows.isEmpty() || newRows.isEmpty()) {
+            mRows = newRows;
+            if (!oldRows.isEmpty()) {
+                notifyItemRangeRemoved(0, oldRows.size());
+            }
+            if (!newRows.isEmpty()) {
+                notifyItemRangeInserted(0, newRows.size());
+            }
+            return;
+        }
+
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result =
+                        DiffUtil.calculateDiff(new RowDiffCallback(oldRows, newRows));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            mRows = newRows;
+                            result.dispatchUpdatesTo(StoryAdapter.this);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Show the given rows below the last submitted ones.
+     * <p>
+     * While no comparison is running the batch is only added at the end of the shown rows,
+     * without comparing them again. Otherwise it goes after the submitted rows, which are
+     * compared with the shown ones.
+     */
+    public void appendRows(List<StoryRow> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (mLatestRows != mRows) {
+            ArrayList<StoryRow> rows = new ArrayList<>(mLatestRows.size() + batch.size());
+            rows.addAll(mLatestRows);
+            rows.addAll(batch);
+            submitRows(rows);
+            return;
+        }
+
+        // The submitted rows are copied once, the following batches go into the copy
+        if (mAppendedRows == null) {
+            mAppendedRows = new ArrayList<>(mRows);
+            mRows = mAppendedRows;
+            mLatestRows = mAppendedRows;
         }
+        int positionStart = mAppendedRows.size();
+        mAppendedRows.addAll(batch);
+        notifyItemRangeInserted(positionStart, batch.size());
+    }
+
+    /**
+     * Return the shown row at the given position.
+     */
+    public StoryRow getItem(int position) {
+        return mRows.get(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mRows.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mRows.get(position).getStableId();
+    }
+
+    /**
+     * Returns a new list item view holder, that will be bound to the item at some position.
+     */
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(mContext).inflate(
+                R.layout.story_list_item, parent, false);
+        return new ViewHolder(listItemView);
+    }
+
+    /**
+     * Displays information about the item at the given position in the list.
+     */
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        long bindStart = Metrics.start();
 
-        // Get the tag of the current list item holder
-        holder = (ViewHolder) listItemView.getTag();
+        // Find the item at the given position in the list
+        StoryRow currentRow = mRows.get(position);
+        holder.row = currentRow;
 
         // Display story title
-        holder.titleTextView.setText(currentStory.getTitle());
+        holder.titleTextView.setText(currentRow.getTitle());
 
         // Display story author
-        holder.authorTextView.setText(currentStory.getAuthorsAsString());
+        holder.authorTextView.setText(currentRow.getAuthorLine());
 
         // Display story publish date
-        Date date = currentStory.getDate();
-        if (date != null)
-            holder.dateTextView.setText(formatDate(date));
+        holder.dateTextView.setText(currentRow.getDisplayDate());
 
         // Display story section
-        holder.sectionTextView.setText(currentStory.getSection());
-
-        // Display story thumbnail if available
-        String imageUrl = currentStory.getThumnailUrl();
-        if (imageUrl != null) {
-            // Display the image of the current book that View
-            Picasso.with(getContext())
-                    .load(imageUrl)
-                    .into(holder.thumbnailImageView);
-        }
+        holder.sectionTextView.setText(currentRow.getSection());
 
-        // Return the list item view that is now showing the appropriate data
-        return listItemView;
+        // Display story thumbnail, or the placeholder if there is none
+        mThumbnailLoader.load(currentRow.getThumbnailUrl(), holder.thumbnailImageView);
+        Metrics.stop(Metrics.ADAPTER_BIND, bindStart);
     }
 
     /**
-     * Return the formatted date string (i.e. "Mar 3, 1984") from a Date object.
+     * Stops loading the thumbnail of a list item that has scrolled out of view.
      */
-    private String formatDate(Date dateObject) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd. MMM, yyyy");
-        return dateFormat.format(dateObject);
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        mThumbnailLoader.cancel(holder.thumbnailImageView);
+        holder.row = null;
+    }
+
+    /**
+     * Compares two lists of rows: rows of the same story URL are the same item and rows
+     * with the same text need not be bound again.
+     */
+    private static class RowDiffCallback extends DiffUtil.Callback {
+
+        private final List<StoryRow> mOldRows;
+        private final List<StoryRow> mNewRows;
+
+        RowDiffCallback(List<StoryRow> oldRows, List<StoryRow> newRows) {
+            mOldRows = oldRows;
+            mNewRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldRows.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewRows.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.get(oldItemPosition).getUrl()
+                    .equals(mNewRows.get(newItemPosition).getUrl());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.get(oldItemPosition).hasSameContents(mNewRows.get(newItemPosition));
+        }
     }
 
     /* Implement ViewHolder pattern for increased performance */
-    static class ViewHolder {
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
         @BindView(R.id.story_title)
         TextView titleTextView;
         @BindView(R.id.story_author)
@@ -122,8 +296,19 @@ public class StoryAdapter extends ArrayAdapter<Story> {
         @BindView(R.id.story_thumbnail)
         ImageView thumbnailImageView;
 
+        StoryRow row;
+
         public ViewHolder(View view) {
+            super(view);
             ButterKnife.bind(this, view);
+            view.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view) {
+            if (row != null && mClickListener != null) {
+                mClickListener.onStoryClick(row);
+            }
         }
     }
-}
\ No newline at end of file
+}
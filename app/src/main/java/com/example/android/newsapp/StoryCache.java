@@ -0,0 +1,216 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Persistent cache of the first {@link StoryPage} of a query, keyed by the normalized query URL.
+ * <p>
+ * Entries live in the cache directory of the app, so they survive the death of the process.
+ * An entry is the query URL followed by the {@link StorySnapshot} of the page, which restores
+ * the stories at a warm start without parsing any JSON.
+ * Entries older than {@link #MAX_AGE_MILLIS} are dropped, and the least recently used entries
+ * are dropped when the cache grows beyond {@link #MAX_SIZE_BYTES}.
+ */
+public final class StoryCache {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = StoryCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory
+     */
+    private static final String CACHE_DIR = "stories";
+
+    /**
+     * Time after which an entry is not served any more
+     */
+    private static final long MAX_AGE_MILLIS = 24 * 60 * 60 * 1000;
+
+    /**
+     * Maximum size of all entries together
+     */
+    private static final long MAX_SIZE_BYTES = 2 * 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static StoryCache sInstance;
+
+    /* Directory of the cache entries */
+    private final File mDirectory;
+
+    private StoryCache(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Return the process wide {@link StoryCache}.
+     */
+    public static synchronized StoryCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new StoryCache(new File(context.getApplicationContext().getCacheDir(), CACHE_DIR));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the cached page for the given query URL, or null if there is no usable entry.
+     */
+    public synchronized StoryPage get(String requestUrl) {
+        String key = QueryUtils.normalizeUrl(requestUrl);
+        File file = entryFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - file.lastModified() > MAX_AGE_MILLIS) {
+            delete(file);
+            return null;
+        }
+
+        try {
+            DataInputStream entry = new DataInputStream(new ByteArrayInputStream(readFile(file)));
+
+            // Entries of different URLs may share a file name
+            if (!key.equals(entry.readUTF())) {
+                return null;
+            }
+
+            byte[] snapshot = new byte[entry.available()];
+            entry.readFully(snapshot);
+            StoryPage storyPage = StorySnapshot.read(snapshot);
+
+            // Remember the access for the eviction of the least recently used entries
+            file.setLastModified(System.currentTimeMillis());
+            return storyPage;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cache entry for " + key, e);
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Store the given page for the given query URL.
+     */
+    public synchronized void put(String requestUrl, StoryPage storyPage) {
+        String key = QueryUtils.normalizeUrl(requestUrl);
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Problem creating the cache directory");
+            return;
+        }
+
+        File file = entryFile(key);
+        File tempFile = new File(mDirectory, file.getName() + ".tmp");
+        try {
+            writeFile(tempFile, key, StorySnapshot.write(storyPage));
+
+            // Replace the entry at once, so a reader never sees a partly written file
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Problem renaming " + tempFile);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the cache entry for " + key, e);
+            delete(tempFile);
+            return;
+        }
+
+        trimToSize();
+    }
+
+    /**
+     * Drop the least recently used entries until the cache fits into its maximum size.
+     */
+    private void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= MAX_SIZE_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (size <= MAX_SIZE_BYTES) {
+                break;
+            }
+            size -= file.length();
+            delete(file);
+        }
+    }
+
+    private File entryFile(String key) {
+        return new File(mDirectory, hash(key));
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] content = new byte[(int) file.length()];
+            input.readFully(content);
+            return content;
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void writeFile(File file, String key, byte[] snapshot) throws IOException {
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(file));
+        try {
+            output.writeUTF(key);
+            output.write(snapshot);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e(LOG_TAG, "Problem deleting " + file);
+        }
+    }
+
+    /**
+     * Return the hex encoded SHA-1 hash of the given key, used as the file name of an entry.
+     */
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+                builder.append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * Creates and upgrades the database of the {@link StoryStore}.
+ */
+class StoryDbHelper extends SQLiteOpenHelper {
+
+    /**
+     * Name and version of the database file
+     */
+    static final String DATABASE_NAME = "stories.db";
+    private static final int DATABASE_VERSION = 2;
+
+    /* Stories, one row for each web URL */
+    static final String TABLE_STORIES = "stories";
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_URL = "url";
+    static final String COLUMN_TITLE = "title";
+    static final String COLUMN_SECTION_ID = "section_id";
+    static final String COLUMN_SECTION = "section";
+    static final String COLUMN_PUBLISHED = "published";
+    static final String COLUMN_THUMBNAIL = "thumbnail";
+
+    /* Authors, one row for each name */
+    static final String TABLE_AUTHORS = "authors";
+    static final String COLUMN_NAME = "name";
+
+    /* Authors of the stories, in the order of the byline */
+    static final String TABLE_STORY_AUTHORS = "story_authors";
+    static final String COLUMN_STORY_ID = "story_id";
+    static final String COLUMN_AUTHOR_ID = "author_id";
+    static final String COLUMN_POSITION = "position";
+
+    /* Full text index of the stories, the docid is the id of the story */
+    static final String TABLE_SEARCH = "story_search";
+    static final String COLUMN_DOCID = "docid";
+    static final String COLUMN_AUTHORS = "authors";
+
+    /* Time ranges of a section for which all stories have been fetched */
+    static final String TABLE_COVERAGE = "coverage";
+    static final String COLUMN_OLDEST = "oldest";
+    static final String COLUMN_NEWEST = "newest";
+
+    StoryDbHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_STORIES + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_URL + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_TITLE + " TEXT NOT NULL, "
+                + COLUMN_SECTION_ID + " TEXT, "
+                + COLUMN_SECTION + " TEXT NOT NULL, "
+                + COLUMN_PUBLISHED + " INTEGER NOT NULL, "
+                + COLUMN_THUMBNAIL + " TEXT)");
+
+        // Newest first, within a section and over all sections
+        db.execSQL("CREATE INDEX stories_section_published ON " + TABLE_STORIES + " ("
+                + COLUMN_SECTION_ID + ", " + COLUMN_PUBLISHED + " DESC, " + COLUMN_ID + " DESC)");
+        db.execSQL("CREATE INDEX stories_published ON " + TABLE_STORIES + " ("
+                + COLUMN_PUBLISHED + " DESC, " + COLUMN_ID + " DESC)");
+
+        db.execSQL("CREATE TABLE " + TABLE_AUTHORS + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_NAME + " TEXT NOT NULL UNIQUE)");
+
+        db.execSQL("CREATE TABLE " + TABLE_STORY_AUTHORS + " ("
+                + COLUMN_STORY_ID + " INTEGER NOT NULL REFERENCES " + TABLE_STORIES
+                + " ON DELETE CASCADE, "
+                + COLUMN_POSITION + " INTEGER NOT NULL, "
+                + COLUMN_AUTHOR_ID + " INTEGER NOT NULL REFERENCES " + TABLE_AUTHORS + ", "
+                + "PRIMARY KEY (" + COLUMN_STORY_ID + ", " + COLUMN_POSITION + ")) WITHOUT ROWID");
+
+        db.execSQL("CREATE TABLE " + TABLE_COVERAGE + " ("
+                + COLUMN_SECTION_ID + " TEXT NOT NULL, "
+                + COLUMN_OLDEST + " INTEGER NOT NULL, "
+                + COLUMN_NEWEST + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX coverage_section ON " + TABLE_COVERAGE + " ("
+                + COLUMN_SECTION_ID + ", " + COLUMN_NEWEST + ")");
+
+        createSearchIndex(db);
+    }
+
+    /**
+     * Create the full text index of titles, authors and sections. Prefixes of up to three
+     * characters are indexed as well, so the first letters of a search are answered fast.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_SEARCH + " USING fts4("
+                + COLUMN_TITLE + ", " + COLUMN_AUTHORS + ", " + COLUMN_SECTION + ", "
+                + "prefix=\"1,2,3\")");
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion == 1) {
+            // Index the stories stored so far, with the authors in the order of the byline
+            createSearchIndex(db);
+            db.execSQL("INSERT INTO " + TABLE_SEARCH + " (" + COLUMN_DOCID + ", "
+                    + COLUMN_TITLE + ", " + COLUMN_AUTHORS + ", " + COLUMN_SECTION + ")"
+                    + " SELECT s." + COLUMN_ID + ", s." + COLUMN_TITLE + ", ("
+                    + "SELECT group_concat(" + COLUMN_NAME + ", ', ') FROM ("
+                    + "SELECT a." + COLUMN_NAME + " FROM " + TABLE_STORY_AUTHORS + " sa JOIN "
+                    + TABLE_AUTHORS + " a ON a." + COLUMN_ID + " = sa." + COLUMN_AUTHOR_ID
+                    + " WHERE sa." + COLUMN_STORY_ID + " = s." + COLUMN_ID
+                    + " ORDER BY sa." + COLUMN_POSITION + ")), s." + COLUMN_SECTION
+                    + " FROM " + TABLE_STORIES + " s");
+            return;
+        }
+
+        // The stories are only a cache of the guardian, so they are fetched again
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SEARCH);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_COVERAGE);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_STORY_AUTHORS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_AUTHORS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_STORIES);
+        onCreate(db);
+    }
+}
@@ -1,28 +1,100 @@
-
 package com.example.android.newsapp;
 
-import android.content.AsyncTaskLoader;
 import android.content.Context;
-import android.util.Log;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 /**
- * Loads a list of items by using an AsyncTask to perform the
+ * Loads a list of items on the {@link LoadExecutor}, which performs the
  * network request to the given URL.
+ * <p>
+ * The query is loaded page by page: the delivered list contains the rows of the stories of the
+ * last few pages loaded and {@link #loadNextPage()} appends the next page of the query to it.
+ * The oldest page is dropped once more than {@link #MAX_PAGES} are kept, so the memory of the
+ * list stays the same however far it is scrolled. {@link #loadPreviousPage()} reads a dropped
+ * page again from the caches or the {@link StoryStore} and drops the newest page in turn.
+ * The {@link StoryRow}s are built here, on the loader thread, ready to be bound.
+ * <p>
+ * Pages that have been parsed a short time ago are taken from the {@link StoryMemoryCache}
+ * without any network request. Otherwise the first page is served from the {@link StoryStore},
+ * or the memory cache or the {@link StoryCache}, right away, if it has been loaded before, and
+ * revalidated over the network in the background. Next pages that the {@link StoryStore} holds
+ * completely are read from it, so the network is only used to fill the gaps.
+ * <p>
+ * A started loader that still holds the rows of a fresh first page does not load anything.
+ * The first page is loaded before anything that waits on the executor, the next pages are
+ * prefetches that come after the loads of what is visible.
  */
-public class StoryLoader extends AsyncTaskLoader<List<Story>> {
+public class StoryLoader extends RowLoader {
 
     /**
      * Tag for log messages
      */
     private static final String LOG_TAG = StoryLoader.class.getName();
 
+    /**
+     * Number of stories that are handed to the {@link OnStoryBatchListener} at once
+     */
+    private static final int BATCH_SIZE = 5;
+
+    /**
+     * Number of pages whose rows are kept
+     */
+    private static final int MAX_PAGES = 5;
+
+    /**
+     * Receives the rows of a page in small batches on the main thread while the page
+     * is still being loaded.
+     */
+    public interface OnStoryBatchListener {
+        void onStoryBatch(List<StoryRow> batch);
+    }
+
     /**
      * Query URL
      */
     private String mUrl;
 
+    /**
+     * Stories of the query in the {@link StoryStore}
+     */
+    private final StoryStore.Query mQuery;
+
+    /**
+     * Number of stories of a page of the query
+     */
+    private final int mPageSize;
+
+    /**
+     * Listener for batches of stories, may be null. Only used on the main thread.
+     */
+    private OnStoryBatchListener mBatchListener;
+
+    /**
+     * Last page that was loaded and total number of pages of the query
+     */
+    private volatile int mLoadedPage;
+    private volatile int mPages;
+
+    /**
+     * First page whose rows are kept, and the number of rows of each kept page from the first
+     * one to the last one loaded
+     */
+    private volatile int mFirstPage = 1;
+    private volatile int[] mPageRows = new int[0];
+
+    /**
+     * Last page that was fetched from the guardian, 0 if the last page came from the store
+     */
+    private volatile int mNetworkPage;
+
     /**
      * Constructs a new {@link StoryLoader}.
      *
@@ -30,28 +102,439 @@ public class StoryLoader extends AsyncTaskLoader<List<Story>> {
      * @param url     to load data from
      */
     public StoryLoader(Context context, String url) {
-        super(context);
+        super(context, LoadExecutor.getInstance());
         mUrl = url;
+        mQuery = url != null ? StoryStore.Query.fromUrl(url) : null;
+        mPageSize = StoryQueryShaper.getPageSize(url);
+    }
+
+    /**
+     * Set the listener that receives the stories of a page while it is loaded.
+     */
+    public void setOnStoryBatchListener(OnStoryBatchListener listener) {
+        mBatchListener = listener;
+    }
+
+    /**
+     * Return true if the query has pages that have not been loaded yet.
+     */
+    public boolean hasMorePages() {
+        return mLoadedPage < mPages;
+    }
+
+    /**
+     * Return true if the rows of pages before the kept ones have been dropped.
+     */
+    public boolean hasPreviousPages() {
+        return mFirstPage > 1;
+    }
+
+    @Override
+    public List<String> getQueryUrls() {
+        return Collections.singletonList(mUrl);
+    }
+
+    /**
+     * Start loading the next page of the query, unless a page is already being loaded.
+     */
+    public void loadNextPage() {
+        if (isLoading() || !hasMorePages()) {
+            return;
+        }
+        loadPage(mLoadedPage + 1, LoadExecutor.PRIORITY_PREFETCH);
+    }
+
+    /**
+     * Start reading the page before the kept ones again, unless a page is being loaded.
+     */
+    public void loadPreviousPage() {
+        if (isLoading() || !hasPreviousPages()) {
+            return;
+        }
+        final int page = mFirstPage - 1;
+        final List<StoryRow> loadedRows = getRows().getValue();
+        final CancellationToken token = startLoad();
+        mExecutor.execute(LoadExecutor.PRIORITY_VISIBLE, token, new Runnable() {
+            @Override
+            public void run() {
+                postResult(token, prependPage(page, loadedRows), true);
+            }
+        });
     }
 
     @Override
     protected void onStartLoading() {
-        Log.e("Loader", "after call of onStartLoading");
-        forceLoad();
+        // There is nothing to load while the first page is still fresh,
+        // and a load that is still running goes on
+        if (isLoading() || getRows().getValue() != null && isFresh(mUrl)) {
+            return;
+        }
+        loadPage(1, LoadExecutor.PRIORITY_VISIBLE);
+    }
+
+    /**
+     * Load the given page with the given priority, in place of the running load.
+     */
+    private void loadPage(final int page, int priority) {
+        final List<StoryRow> loadedRows = getRows().getValue();
+        final CancellationToken token = startLoad();
+        mExecutor.execute(priority, token, new Runnable() {
+            @Override
+            public void run() {
+                long loadStart = Metrics.start();
+                List<StoryRow> rows = loadRows(page, loadedRows, token);
+                Metrics.stop(Metrics.LOADER_LOAD, loadStart, rows != null ? rows.size() : 0);
+                postResult(token, rows, true);
+            }
+        });
     }
 
     /**
+     * Return the rows of the given page appended to the given rows loaded before.
      * This is on a background thread.
      */
-    @Override
-    public List<Story> loadInBackground() {
-        Log.e("Loader", "after call of loadInBackground");
+    private List<StoryRow> loadRows(int page, List<StoryRow> loadedRows, CancellationToken token) {
         if (mUrl == null) {
             return null;
         }
 
-        // Perform the network request, parse the response, and extract a list of stories.
-        List<Story> stories = QueryUtils.fetchStoryData(mUrl);
-        return stories;
+        String pageUrl = pageUrl(page);
+        StoryStore store = StoryStore.getInstance(getContext());
+
+        // Last story shown, which the next page continues
+        Story lastStory = null;
+        if (page > 1 && loadedRows != null && !loadedRows.isEmpty()) {
+            lastStory = loadedRows.get(loadedRows.size() - 1).getStory();
+        }
+
+        // Pages parsed a short time ago in this process are used as they are
+        StoryMemoryCache memoryCache = StoryMemoryCache.getInstance();
+        StoryMemoryCache.Entry memoryEntry = memoryCache.get(pageUrl);
+        if (memoryEntry != null && memoryEntry.isFresh()) {
+            mNetworkPage = page;
+            return appendPage(page, loadedRows, null, memoryEntry.getStoryPage());
+        }
+
+        // The next page is read from the store if it holds every story of it
+        if (lastStory != null) {
+            List<Story> storedStories = store.queryCovered(mQuery, lastStory, mPageSize);
+            if (storedStories.size() == mPageSize) {
+                mNetworkPage = 0;
+                return appendStoredPage(page, loadedRows, storedStories);
+            }
+        }
+
+        // Page to revalidate with a conditional request, if any
+        StoryPage cachedPage = memoryEntry != null ? memoryEntry.getStoryPage() : null;
+
+        // Show the stored or cached first page while it is revalidated below
+        StoryCache cache = StoryCache.getInstance(getContext());
+        if (page == 1 && cachedPage == null) {
+            cachedPage = cache.get(mUrl);
+        }
+        if (page == 1 && loadedRows == null) {
+            List<Story> storedStories = store.query(mQuery, null, mPageSize);
+            if (!storedStories.isEmpty()) {
+                loadedRows = StoryRow.fromStories(storedStories);
+            } else if (cachedPage != null) {
+                loadedRows = StoryRow.fromStories(cachedPage.getStories());
+            }
+            if (loadedRows != null) {
+                mFirstPage = 1;
+                mPageRows = new int[]{loadedRows.size()};
+            }
+            if (cachedPage != null) {
+                mLoadedPage = cachedPage.getCurrentPage();
+                mPages = cachedPage.getPages();
+            }
+            if (loadedRows != null) {
+                showCachedRows(token, loadedRows);
+            }
+        }
+
+        // Without a connection the stored stories are all we have
+        if (!isConnected(getContext())) {
+            if (lastStory != null) {
+                mNetworkPage = 0;
+                return appendStoredPage(page, loadedRows,
+                        store.query(mQuery, lastStory, mPageSize));
+            }
+            return loadedRows;
+        }
+
+        // Stories are only streamed in batches if they are appended to the shown stories,
+        // a reload of the first page replaces the shown stories when it is finished.
+        // Stories that moved onto the next page while paging are only shown once.
+        HashSet<String> loadedUrls = new HashSet<>();
+        if (page > 1 && loadedRows != null) {
+            for (StoryRow row : loadedRows) {
+                loadedUrls.add(row.getUrl());
+            }
+        }
+        StoryBatcher batcher = null;
+        if (page > 1 || loadedRows == null) {
+            batcher = new StoryBatcher(token, new HashSet<>(loadedUrls));
+        }
+
+        // Perform the network request, parse the response, and extract a page of stories.
+        // An unchanged page comes back as the cached page itself, without being parsed again.
+        StoryPage storyPage = QueryUtils.fetchStoryPage(pageUrl, cachedPage, batcher, token);
+        if (token.isCanceled()) {
+            // A newer load has taken over, which does its own paging
+            return null;
+        }
+        if (batcher != null) {
+            batcher.flush();
+        }
+
+        if (storyPage == null) {
+            // Serve the page parsed before while the guardian is failing
+            if (page > 1 && cachedPage != null) {
+                return appendPage(page, loadedRows, loadedUrls, cachedPage);
+            }
+            // Stop paging until the query is loaded again
+            mPages = mLoadedPage;
+            return loadedRows;
+        }
+
+        memoryCache.put(pageUrl, storyPage);
+        if (page == 1) {
+            cache.put(mUrl, storyPage);
+        }
+
+        // The page directly follows the last story if that came from the page before it
+        Story newerStory = page == mNetworkPage + 1 ? lastStory : null;
+        store.putPage(pageUrl, storyPage, newerStory);
+        mNetworkPage = page;
+        return appendPage(page, loadedRows, loadedUrls, storyPage);
+    }
+
+    /**
+     * Return the rows of the given page appended to the rows loaded before, or the rows
+     * of the page alone if it is the first one. Stories of the page that have already been
+     * loaded are left out.
+     */
+    private List<StoryRow> appendPage(int page, List<StoryRow> loadedRows,
+                                      HashSet<String> loadedUrls, StoryPage storyPage) {
+        List<StoryRow> rows = appendStories(page, loadedRows, loadedUrls, storyPage.getStories());
+        mLoadedPage = storyPage.getCurrentPage();
+        mPages = storyPage.getPages();
+        return rows;
+    }
+
+    /**
+     * Return the rows of the given stored stories appended to the rows loaded before as the
+     * given page. Paging stops if there are no more stored stories.
+     */
+    private List<StoryRow> appendStoredPage(int page, List<StoryRow> loadedRows,
+                                            List<Story> stories) {
+        if (stories.isEmpty()) {
+            mPages = mLoadedPage;
+            return loadedRows;
+        }
+        mLoadedPage = page;
+        mPages = Math.max(mPages, page + 1);
+        return appendStories(page, loadedRows, null, stories);
+    }
+
+    /**
+     * Return the rows of the given stories appended to the rows loaded before, or the rows
+     * of the stories alone if they are of the first page. Stories that have already been
+     * loaded are left out.
+     */
+    private List<StoryRow> appendStories(int page, List<StoryRow> loadedRows,
+                                         HashSet<String> loadedUrls, List<Story> stories) {
+        ArrayList<StoryRow> rows = new ArrayList<>();
+        if (page > 1 && loadedRows != null) {
+            rows.addAll(loadedRows);
+            if (loadedUrls == null) {
+                loadedUrls = new HashSet<>();
+                for (StoryRow row : loadedRows) {
+                    loadedUrls.add(row.getUrl());
+                }
+            }
+        }
+        for (Story story : stories) {
+            if (loadedUrls == null || loadedUrls.add(story.getUrl())) {
+                rows.add(new StoryRow(story));
+            }
+        }
+
+        if (page <= 1 || loadedRows == null) {
+            mFirstPage = page;
+            mPageRows = new int[]{rows.size()};
+            return rows;
+        }
+
+        // Keep the rows of the last pages only
+        int[] pageRows = Arrays.copyOf(mPageRows, mPageRows.length + 1);
+        pageRows[pageRows.length - 1] = rows.size() - loadedRows.size();
+        if (pageRows.length > MAX_PAGES) {
+            int dropped = Math.min(pageRows[0], rows.size());
+            rows = new ArrayList<>(rows.subList(dropped, rows.size()));
+            pageRows = Arrays.copyOfRange(pageRows, 1, pageRows.length);
+            mFirstPage++;
+        }
+        mPageRows = pageRows;
+        return rows;
+    }
+
+    /**
+     * Return the rows of the given page, which comes right before the kept ones, followed by
+     * the given rows loaded before. The page is read again from the caches or the store,
+     * without a network request. This is on a background thread.
+     */
+    private List<StoryRow> prependPage(int page, List<StoryRow> loadedRows) {
+        if (loadedRows == null || loadedRows.isEmpty()) {
+            return loadedRows;
+        }
+
+        List<Story> stories = readPage(page, loadedRows.get(0).getStory());
+        if (stories.isEmpty()) {
+            // The page is gone from the store as well, so paging back ends here
+            mFirstPage = 1;
+            return loadedRows;
+        }
+
+        HashSet<String> loadedUrls = new HashSet<>();
+        for (StoryRow row : loadedRows) {
+            loadedUrls.add(row.getUrl());
+        }
+        ArrayList<StoryRow> rows = new ArrayList<>(stories.size() + loadedRows.size());
+        for (Story story : stories) {
+            if (loadedUrls.add(story.getUrl())) {
+                rows.add(new StoryRow(story));
+            }
+        }
+        int[] pageRows = new int[mPageRows.length + 1];
+        pageRows[0] = rows.size();
+        System.arraycopy(mPageRows, 0, pageRows, 1, mPageRows.length);
+        rows.addAll(loadedRows);
+
+        // Drop the last page, which is read again when it is scrolled to
+        if (pageRows.length > MAX_PAGES) {
+            int dropped = Math.min(pageRows[pageRows.length - 1], rows.size());
+            rows = new ArrayList<>(rows.subList(0, rows.size() - dropped));
+            pageRows = Arrays.copyOf(pageRows, pageRows.length - 1);
+            mLoadedPage = page + pageRows.length - 1;
+            mNetworkPage = 0;
+        }
+        mFirstPage = page;
+        mPageRows = pageRows;
+        return rows;
+    }
+
+    /**
+     * Return the stories of the given page, which comes right before the given story, as they
+     * have been loaded before.
+     */
+    private List<Story> readPage(int page, Story firstStory) {
+        // The page as it has been parsed or cached
+        StoryMemoryCache.Entry memoryEntry = StoryMemoryCache.getInstance().get(pageUrl(page));
+        if (memoryEntry != null) {
+            return memoryEntry.getStoryPage().getStories();
+        }
+        if (page == 1) {
+            StoryPage cachedPage = StoryCache.getInstance(getContext()).get(mUrl);
+            if (cachedPage != null) {
+                return cachedPage.getStories();
+            }
+        }
+
+        // The stories the store holds right before the first kept one
+        return StoryStore.getInstance(getContext()).queryNewer(mQuery, firstStory, mPageSize);
+    }
+
+    /**
+     * Return true if there is a network connection.
+     */
+    public static boolean isConnected(Context context) {
+        // Get a reference to the ConnectivityManager to check state of network connectivity
+        ConnectivityManager connMgr = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        // Get details on the currently active default data network
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    /**
+     * Return true if the page of the given URL has been parsed a short time ago, so loading
+     * it again would give the same stories.
+     */
+    static boolean isFresh(String pageUrl) {
+        StoryMemoryCache.Entry entry = StoryMemoryCache.getInstance().get(pageUrl);
+        return entry != null && entry.isFresh();
+    }
+
+    /**
+     * Deliver the rows of the cached stories on the main thread, while the load goes on.
+     */
+    private void showCachedRows(final CancellationToken token, final List<StoryRow> rows) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isCurrent(token) && getRows().getValue() == null) {
+                    deliverResult(rows);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the query URL for the given page.
+     */
+    private String pageUrl(int page) {
+        if (page <= 1) {
+            return mUrl;
+        }
+        return Uri.parse(mUrl).buildUpon()
+                .appendQueryParameter("page", String.valueOf(page))
+                .build()
+                .toString();
+    }
+
+    /**
+     * Collects the rows of parsed stories and posts them in batches to the main thread.
+     */
+    private class StoryBatcher implements StoryStreamParser.OnStoryParsedListener {
+
+        private final CancellationToken mToken;
+        private final HashSet<String> mLoadedUrls;
+        private ArrayList<StoryRow> mBatch = new ArrayList<>(BATCH_SIZE);
+
+        StoryBatcher(CancellationToken token, HashSet<String> loadedUrls) {
+            mToken = token;
+            mLoadedUrls = loadedUrls;
+        }
+
+        @Override
+        public void onStoryParsed(Story story) {
+            if (!mLoadedUrls.add(story.getUrl())) {
+                return;
+            }
+            mBatch.add(new StoryRow(story));
+            if (mBatch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (mBatch.isEmpty()) {
+                return;
+            }
+            final List<StoryRow> batch = mBatch;
+            mBatch = new ArrayList<>(BATCH_SIZE);
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // The listener of the activity that is shown right now
+                    OnStoryBatchListener listener = mBatchListener;
+                    if (listener != null && isCurrent(mToken)) {
+                        listener.onStoryBatch(batch);
+                    }
+                }
+            });
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+package com.example.android.newsapp;
+
+import android.util.LruCache;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Process wide in memory cache of parsed {@link StoryPage}s, keyed by the normalized request URL.
+ * <p>
+ * The cache is bounded by the approximate number of bytes the cached stories take on the heap,
+ * and keeps hit, miss and eviction counters to tune that size.
+ */
+public final class StoryMemoryCache {
+
+    /**
+     * Default share of the maximum heap size that the cache may take
+     */
+    private static final int DEFAULT_HEAP_FRACTION = 16;
+
+    /**
+     * Time during which a cached page is served without asking the network again
+     */
+    private static final long FRESH_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Approximate heap overhead of an object header plus its reference fields
+     */
+    private static final int OBJECT_OVERHEAD_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private static StoryMemoryCache sInstance;
+
+    private final LruCache<String, Entry> mCache;
+
+    private StoryMemoryCache(int maxSizeBytes) {
+        mCache = new LruCache<String, Entry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.mSizeBytes;
+            }
+        };
+    }
+
+    /**
+     * Return the process wide {@link StoryMemoryCache}.
+     */
+    public static synchronized StoryMemoryCache getInstance() {
+        if (sInstance == null) {
+            long maxSizeBytes = Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION;
+            sInstance = new StoryMemoryCache((int) Math.min(maxSizeBytes, Integer.MAX_VALUE));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the cache entry for the given request URL, or null if there is none.
+     */
+    public Entry get(String requestUrl) {
+        return mCache.get(QueryUtils.normalizeUrl(requestUrl));
+    }
+
+    /**
+     * Store the given page for the given request URL.
+     */
+    public void put(String requestUrl, StoryPage storyPage) {
+        String key = QueryUtils.normalizeUrl(requestUrl);
+        mCache.put(key, new Entry(storyPage, System.currentTimeMillis(), sizeOf(key, storyPage)));
+    }
+
+    /**
+     * Change the maximum size of the cache, evicting entries if it shrinks.
+     */
+    public void resize(int maxSizeBytes) {
+        mCache.resize(maxSizeBytes);
+    }
+
+    /* Statistics to tune the size of the cache */
+    public int getSizeBytes() {
+        return mCache.size();
+    }
+
+    public int getMaxSizeBytes() {
+        return mCache.maxSize();
+    }
+
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * Return the approximate number of heap bytes taken by the given entry.
+     * <p>
+     * The section and author names of the stories are shared through the
+     * {@link StoryDictionary}, so each of these strings is only counted once per page.
+     */
+    private static int sizeOf(String key, StoryPage storyPage) {
+        List<Story> stories = storyPage.getStories();
+        int size = OBJECT_OVERHEAD_BYTES + sizeOf(key) + OBJECT_OVERHEAD_BYTES
+                + stories.size() * REFERENCE_BYTES;
+        Set<String> sharedStrings =
+                Collections.newSetFromMap(new IdentityHashMap<String, Boolean>());
+        for (Story story : stories) {
+            size += OBJECT_OVERHEAD_BYTES + 7 * REFERENCE_BYTES + 8;
+            size += sizeOf(story.getTitle()) + sizeOf(story.getUrl())
+                    + sizeOf(story.getThumnailUrl());
+            size += sizeOfShared(story.getSectionId(), sharedStrings)
+                    + sizeOfShared(story.getSection(), sharedStrings);
+            size += OBJECT_OVERHEAD_BYTES + story.getAuthorCount() * REFERENCE_BYTES;
+            for (String author : story.getAuthors()) {
+                size += sizeOfShared(author, sharedStrings);
+            }
+        }
+        return size;
+    }
+
+    private static int sizeOf(String value) {
+        return value == null ? 0 : OBJECT_OVERHEAD_BYTES * 2 + value.length() * 2;
+    }
+
+    /* Size of the given string if it is not in the given strings counted before, otherwise 0 */
+    private static int sizeOfShared(String value, Set<String> countedStrings) {
+        return value != null && countedStrings.add(value) ? sizeOf(value) : 0;
+    }
+
+    /**
+     * A cached {@link StoryPage} together with the time it was loaded.
+     */
+    public static final class Entry {
+
+        private final StoryPage mStoryPage;
+        private final long mTimeMillis;
+        private final int mSizeBytes;
+
+        private Entry(StoryPage storyPage, long timeMillis, int sizeBytes) {
+            mStoryPage = storyPage;
+            mTimeMillis = timeMillis;
+            mSizeBytes = sizeBytes;
+        }
+
+        public StoryPage getStoryPage() {
+            return mStoryPage;
+        }
+
+        /* Helper method to check if the page can be served without asking the network */
+        public boolean isFresh() {
+            return System.currentTimeMillis() - mTimeMillis < FRESH_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Helper methods to build the guardian queries of the sections chosen in the settings.
+ */
+public final class StoryQueries {
+
+    /**
+     * URL of the guardian search, set at build time with the newsRequestUrl gradle property
+     */
+    public static final String NEWS_REQUEST_URL = BuildConfig.NEWS_REQUEST_URL;
+
+    /**
+     * URL of the guardian search the queries are built for
+     */
+    private static volatile String sNewsRequestUrl = NEWS_REQUEST_URL;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link StoryQueries} object.
+     */
+    private StoryQueries() {
+    }
+
+    /**
+     * Build the queries for the search at the given URL instead, for example for a mock
+     * guardian server in a test. Pass {@link #NEWS_REQUEST_URL} to go back to the default.
+     */
+    public static void setNewsRequestUrl(String newsRequestUrl) {
+        sNewsRequestUrl = newsRequestUrl;
+    }
+
+    public static String getNewsRequestUrl() {
+        return sNewsRequestUrl;
+    }
+
+    /**
+     * Return the query URLs of the followed sections, or an empty list if no section is followed.
+     */
+    public static List<String> getFollowedSectionUrls(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String maxDate = getMaxDate(context, sharedPrefs);
+        Set<String> followedSections = sharedPrefs.getStringSet(
+                context.getString(R.string.settings_follow_sections_key),
+                Collections.<String>emptySet());
+
+        // The sections are shown together, so their pages together fill the screens of a page
+        int pageSize = StoryQueryShaper.getPageSize(context, followedSections.size());
+        ArrayList<String> urls = new ArrayList<>();
+        for (String followedSection : followedSections) {
+            urls.add(buildQueryUrl(followedSection, maxDate, pageSize));
+        }
+        return urls;
+    }
+
+    /**
+     * Return the query URL of the selected section.
+     */
+    public static String getSelectedSectionUrl(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String section = sharedPrefs.getString(
+                context.getString(R.string.settings_select_section_key),
+                context.getString(R.string.settings_select_section_default));
+        return buildQueryUrl(section, getMaxDate(context, sharedPrefs),
+                StoryQueryShaper.getPageSize(context, 1));
+    }
+
+    /**
+     * Return the query URLs the story list shows: those of the followed sections if any section
+     * is followed, otherwise the one of the selected section.
+     */
+    public static List<String> getQueryUrls(Context context) {
+        List<String> urls = getFollowedSectionUrls(context);
+        if (urls.isEmpty()) {
+            urls.add(getSelectedSectionUrl(context));
+        }
+        return urls;
+    }
+
+    /**
+     * Return the query URL for the given section and maximum date, which may be empty, with
+     * pages of the given size.
+     */
+    public static String buildQueryUrl(String section, String maxDate, int pageSize) {
+        // Start building the URL with the base URL
+        Uri baseUri = Uri.parse(sNewsRequestUrl);
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+
+
+        // Build URL with the preferences
+        // API Key
+        uriBuilder.appendQueryParameter("api-key", "test");
+        // Fields, order and page size
+        StoryQueryShaper.appendShape(uriBuilder, pageSize);
+        // Which section
+        if (!section.isEmpty()) {
+            uriBuilder.appendQueryParameter("section", section);
+        }
+        // From which minimum date
+        if (!maxDate.isEmpty()) {
+            uriBuilder.appendQueryParameter("to-date", maxDate);
+        }
+
+        return uriBuilder.toString();
+    }
+
+    private static String getMaxDate(Context context, SharedPreferences sharedPrefs) {
+        return sharedPrefs.getString(
+                context.getString(R.string.settings_max_date_key),
+                context.getString(R.string.settings_max_date_default));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
+import android.telephony.TelephonyManager;
+import android.util.DisplayMetrics;
+
+/**
+ * Shapes the guardian queries of the story list to what the list shows.
+ * <p>
+ * A query asks for the fields and tags {@link Story} is built from and nothing else, and for
+ * the newest stories first, which is the order of the list and of the {@link StoryStore}.
+ * <p>
+ * A page holds as many stories as fill the screen twice in portrait, spread over the sections
+ * that are loaded together. The page sizes are rounded to steps and only depend on the size of
+ * the screen, not on its orientation, so the URLs of the queries, and with them the caches and
+ * the pages fetched in the background, stay the same when the device rotates or the connection
+ * changes.
+ * <p>
+ * The connection decides how far ahead of the visible rows the next page is loaded instead:
+ * two screens on an unmetered connection, one on a metered one and none on a slow one, where
+ * every byte shows.
+ */
+public final class StoryQueryShaper {
+
+    /**
+     * Page size of the guardian if a query does not ask for one
+     */
+    public static final int DEFAULT_PAGE_SIZE = 10;
+
+    /**
+     * Smallest and largest page size, and the step the page sizes are rounded up to
+     */
+    private static final int MIN_PAGE_SIZE = 5;
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int PAGE_SIZE_STEP = 5;
+
+    /**
+     * Number of screens of rows a page covers
+     */
+    private static final int SCREENS_PER_PAGE = 2;
+
+    /**
+     * Number of screens of rows ahead of the visible ones at which the next page is loaded on
+     * each kind of connection, and the least number of rows
+     */
+    private static final int SCREENS_AHEAD_UNMETERED = 2;
+    private static final int SCREENS_AHEAD_METERED = 1;
+    private static final int SCREENS_AHEAD_SLOW = 0;
+    private static final int MIN_ROWS_AHEAD = 5;
+
+    /**
+     * Order of the stories of a query
+     */
+    private static final String ORDER_BY = "newest";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link StoryQueryShaper}
+     * object.
+     */
+    private StoryQueryShaper() {
+    }
+
+    /**
+     * Append the parameters of the shape of a query with the given page size.
+     */
+    public static void appendShape(Uri.Builder uriBuilder, int pageSize) {
+        // Only the fields and tags a story is built from
+        uriBuilder.appendQueryParameter("show-fields", QueryUtils.SHOW_FIELDS);
+        uriBuilder.appendQueryParameter("show-tags", QueryUtils.SHOW_TAGS);
+        // Same order as the list, also for a search where the guardian would sort by relevance
+        uriBuilder.appendQueryParameter("order-by", ORDER_BY);
+        uriBuilder.appendQueryParameter("page-size", String.valueOf(pageSize));
+    }
+
+    /**
+     * Return the page size of each of the given number of queries that are shown together.
+     */
+    public static int getPageSize(Context context, int queries) {
+        // The long side of the screen, whatever the orientation is right now
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int stories = getRows(context, Math.max(metrics.heightPixels, metrics.widthPixels))
+                * SCREENS_PER_PAGE;
+        int pageSize = (stories + Math.max(1, queries) - 1) / Math.max(1, queries);
+        pageSize = (pageSize + PAGE_SIZE_STEP - 1) / PAGE_SIZE_STEP * PAGE_SIZE_STEP;
+        return Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, pageSize));
+    }
+
+    /**
+     * Return the page size of the given query URL.
+     */
+    public static int getPageSize(String queryUrl) {
+        String pageSize = queryUrl != null
+                ? Uri.parse(queryUrl).getQueryParameter("page-size") : null;
+        if (pageSize == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        try {
+            return Integer.parseInt(pageSize);
+        } catch (NumberFormatException e) {
+            return DEFAULT_PAGE_SIZE;
+        }
+    }
+
+    /**
+     * Return the number of rows left below the visible ones at which the next page is loaded
+     * on the current connection.
+     */
+    public static int getRowsAhead(Context context) {
+        int screenHeight = context.getResources().getDisplayMetrics().heightPixels;
+        return Math.max(MIN_ROWS_AHEAD, getRows(context, screenHeight) * getScreensAhead(context));
+    }
+
+    /**
+     * Return the number of rows that fill the given height in pixels.
+     */
+    private static int getRows(Context context, int height) {
+        int listItemHeight = context.getResources()
+                .getDimensionPixelSize(R.dimen.list_item_height);
+        return (height + listItemHeight - 1) / listItemHeight;
+    }
+
+    /**
+     * Return the number of screens of rows ahead at which the next page is loaded on the
+     * current connection.
+     */
+    private static int getScreensAhead(Context context) {
+        ConnectivityManager connMgr = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            // Nothing is fetched now, the stored pages are read when they are reached
+            return SCREENS_AHEAD_SLOW;
+        }
+        if (networkInfo.getType() == ConnectivityManager.TYPE_MOBILE
+                && isSlow(networkInfo.getSubtype())) {
+            return SCREENS_AHEAD_SLOW;
+        }
+        return connMgr.isActiveNetworkMetered() ? SCREENS_AHEAD_METERED : SCREENS_AHEAD_UNMETERED;
+    }
+
+    /**
+     * Return true if the given mobile network type has the bandwidth of a 2G network.
+     */
+    private static boolean isSlow(int networkType) {
+        switch (networkType) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
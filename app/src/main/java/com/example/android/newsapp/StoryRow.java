@@ -0,0 +1,118 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An {@link StoryRow} object contains the text of one row of the story list, derived from a
+ * {@link Story} ahead of time.
+ * <p>
+ * Rows are built on the loader thread, so the adapter only has to bind their final fields
+ * and does not join authors or format dates on the main thread.
+ */
+public final class StoryRow {
+
+    /* Story of this row */
+    private final Story mStory;
+
+    /* Story Title */
+    private final String mTitle;
+
+    /* Story Authors joined into one line */
+    private final String mAuthorLine;
+
+    /* Story Date formatted for display, empty if unknown */
+    private final String mDisplayDate;
+
+    /* Story Section */
+    private final String mSection;
+
+    /* Story Image Url, may be null */
+    private final String mThumbnailUrl;
+
+    /* Id of the row in the list, derived from the story URL */
+    private final long mStableId;
+
+    /**
+     * Constructs a new {@link StoryRow} object for the given story.
+     *
+     * @param story is the story shown in the row
+     */
+    public StoryRow(Story story) {
+        String displayDate = story.getDisplayDate();
+        this.mStory = story;
+        this.mTitle = story.getTitle();
+        this.mAuthorLine = story.getAuthorsAsString();
+        this.mDisplayDate = displayDate != null ? displayDate : "";
+        this.mSection = story.getSection();
+        this.mThumbnailUrl = story.getThumnailUrl();
+        this.mStableId = stableIdOf(story.getUrl());
+    }
+
+    /**
+     * Return the rows of the given stories, in the same order.
+     */
+    public static List<StoryRow> fromStories(List<Story> stories) {
+        ArrayList<StoryRow> rows = new ArrayList<>(stories.size());
+        for (Story story : stories) {
+            rows.add(new StoryRow(story));
+        }
+        return rows;
+    }
+
+    /* Getter Methods */
+    public Story getStory() {
+        return mStory;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public String getAuthorLine() {
+        return mAuthorLine;
+    }
+
+    public String getDisplayDate() {
+        return mDisplayDate;
+    }
+
+    public String getSection() {
+        return mSection;
+    }
+
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    public String getUrl() {
+        return mStory.getUrl();
+    }
+
+    public long getStableId() {
+        return mStableId;
+    }
+
+    /* Helper method to check if the given row shows the same text and image as this one */
+    public boolean hasSameContents(StoryRow other) {
+        return Objects.equals(mTitle, other.mTitle)
+                && Objects.equals(mAuthorLine, other.mAuthorLine)
+                && Objects.equals(mDisplayDate, other.mDisplayDate)
+                && Objects.equals(mSection, other.mSection)
+                && Objects.equals(mThumbnailUrl, other.mThumbnailUrl);
+    }
+
+    /**
+     * Return a 64 bit FNV-1a hash of the given URL, which is unique enough to tell the
+     * stories of a list apart.
+     */
+    private static long stableIdOf(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
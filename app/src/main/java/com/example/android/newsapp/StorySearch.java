@@ -0,0 +1,85 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches the stories of the {@link StoryStore} while the user types.
+ * <p>
+ * The searches run one after the other on a background thread. A search that has been replaced
+ * by a newer one before it ran is skipped, and its results are not delivered, so only the
+ * results of the current text reach the list.
+ */
+public class StorySearch {
+
+    /**
+     * Most stories shown for a search
+     */
+    private static final int MAX_RESULTS = 200;
+
+    /**
+     * Receives the rows of the search results on the main thread.
+     */
+    public interface OnSearchResultsListener {
+        void onSearchResults(List<StoryRow> rows);
+    }
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final StoryStore mStore;
+    private final OnSearchResultsListener mListener;
+
+    /* Number of the newest search, the others are stale */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    public StorySearch(Context context, OnSearchResultsListener listener) {
+        mStore = StoryStore.getInstance(context);
+        mListener = listener;
+    }
+
+    /**
+     * Search the stored stories for the given text in place of the running search.
+     */
+    public void search(final String text) {
+        final int generation = mGeneration.incrementAndGet();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration.get()) {
+                    return;
+                }
+                final List<StoryRow> rows =
+                        StoryRow.fromStories(mStore.search(text, MAX_RESULTS));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration.get()) {
+                            mListener.onSearchResults(rows);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drop the running search, its results are not delivered any more.
+     */
+    public void cancel() {
+        mGeneration.incrementAndGet();
+    }
+
+    /**
+     * Cancel the running search and stop the search thread.
+     */
+    public void shutdown() {
+        cancel();
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,537 @@
+package com.example.android.newsapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_AUTHORS;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_AUTHOR_ID;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_DOCID;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_ID;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_NAME;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_NEWEST;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_OLDEST;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_POSITION;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_PUBLISHED;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_SECTION;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_SECTION_ID;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_STORY_ID;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_THUMBNAIL;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_TITLE;
+import static com.example.android.newsapp.StoryDbHelper.COLUMN_URL;
+import static com.example.android.newsapp.StoryDbHelper.TABLE_AUTHORS;
+import static com.example.android.newsapp.StoryDbHelper.TABLE_COVERAGE;
+import static com.example.android.newsapp.StoryDbHelper.TABLE_SEARCH;
+import static com.example.android.newsapp.StoryDbHelper.TABLE_STORIES;
+import static com.example.android.newsapp.StoryDbHelper.TABLE_STORY_AUTHORS;
+
+/**
+ * Persistent store of all fetched stories, one for each web URL, in a SQLite database.
+ * <p>
+ * The stories of a section up to a date are read newest first, a page at a time, by keyset
+ * paging over an index on section and publication date. The store also remembers the time
+ * ranges of each section for which it holds every story, so a page inside such a range can be
+ * served without asking the guardian.
+ * <p>
+ * Titles, authors and sections of the stored stories are kept in a full text index, which is
+ * updated together with the stories, for a search by word prefixes.
+ */
+public final class StoryStore {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = StoryStore.class.getSimpleName();
+
+    /**
+     * Maximum number of stories kept by default, the oldest ones are dropped first. Queries
+     * and searches read a page over the indexes, so they stay fast with this many stories.
+     */
+    static final int MAX_STORIES = 50000;
+
+    /**
+     * Section id of the ranges covered by queries over all sections
+     */
+    private static final String ALL_SECTIONS = "";
+
+    private static final String[] STORY_COLUMNS = {COLUMN_ID, COLUMN_URL, COLUMN_TITLE,
+            COLUMN_SECTION_ID, COLUMN_SECTION, COLUMN_PUBLISHED, COLUMN_THUMBNAIL};
+
+    private static StoryStore sInstance;
+
+    private final StoryDbHelper mDbHelper;
+
+    /**
+     * Maximum number of stories kept
+     */
+    private final int mMaxStories;
+
+    /**
+     * Create a store in the database file of the given name that keeps up to the given number
+     * of stories.
+     */
+    StoryStore(Context context, String databaseName, int maxStories) {
+        mDbHelper = new StoryDbHelper(context, databaseName);
+        mMaxStories = maxStories;
+    }
+
+    /**
+     * Close the database of the store.
+     */
+    void close() {
+        mDbHelper.close();
+    }
+
+    /**
+     * Return the process wide {@link StoryStore}.
+     */
+    public static synchronized StoryStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new StoryStore(context.getApplicationContext(),
+                    StoryDbHelper.DATABASE_NAME, MAX_STORIES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * The stories a guardian query asks for: those of one or all sections, up to a date.
+     */
+    public static final class Query {
+
+        /* Section id, null for all sections */
+        private final String mSectionId;
+
+        /* Latest publication time in epoch milliseconds */
+        private final long mMaxTime;
+
+        public Query(String sectionId, long maxTime) {
+            mSectionId = TextUtils.isEmpty(sectionId) ? null : sectionId;
+            mMaxTime = maxTime;
+        }
+
+        /**
+         * Return the stories the given guardian query URL asks for.
+         */
+        public static Query fromUrl(String requestUrl) {
+            Uri uri = Uri.parse(requestUrl);
+            long maxTime = StoryDateCodec.parseEndOfDay(uri.getQueryParameter("to-date"));
+            return new Query(uri.getQueryParameter("section"),
+                    maxTime != StoryDateCodec.NO_DATE ? maxTime : Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Store the stories of a fetched page of the given query URL and remember that the store
+     * holds every story of the query between the oldest story of the page and the newest one,
+     * or the given newer story, which the page follows directly in the query.
+     */
+    public synchronized void putPage(String requestUrl, StoryPage storyPage, Story newerStory) {
+        List<Story> stories = storyPage.getStories();
+        if (stories.isEmpty()) {
+            return;
+        }
+
+        try {
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                putStories(db, stories);
+                putCoverage(db, requestUrl, stories, newerStory);
+                trim(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem storing the stories of " + requestUrl, e);
+        }
+    }
+
+    /**
+     * Return up to the given number of stories of the query, newest first, that come after
+     * the given story, or the first ones if it is null.
+     */
+    public List<Story> query(Query query, Story after, int limit) {
+        return query(query, after, false, Long.MIN_VALUE, limit);
+    }
+
+    /**
+     * Return up to the given number of stories of the query that come right before the given
+     * story, newest first, to page back from it.
+     */
+    public List<Story> queryNewer(Query query, Story before, int limit) {
+        List<Story> stories = query(query, before, true, Long.MIN_VALUE, limit);
+        Collections.reverse(stories);
+        return stories;
+    }
+
+    /**
+     * Return up to the given number of stored stories, newest first, that have words starting
+     * with all words of the given text in their title, authors or section.
+     */
+    public List<Story> search(String text, int limit) {
+        String match = matchExpression(text);
+        if (match.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long searchStart = Metrics.start();
+        try {
+            SQLiteDatabase db = mDbHelper.getReadableDatabase();
+            StringBuilder columns = new StringBuilder();
+            for (String column : STORY_COLUMNS) {
+                columns.append(columns.length() == 0 ? "s." : ", s.").append(column);
+            }
+            Cursor cursor = db.rawQuery("SELECT " + columns + " FROM " + TABLE_SEARCH
+                            + " JOIN " + TABLE_STORIES + " s ON s." + COLUMN_ID + " = "
+                            + TABLE_SEARCH + "." + COLUMN_DOCID + " WHERE " + TABLE_SEARCH
+                            + " MATCH ? ORDER BY s." + COLUMN_PUBLISHED + " DESC, s." + COLUMN_ID
+                            + " DESC LIMIT " + limit,
+                    new String[]{match});
+            try {
+                List<Story> stories = readStories(db, cursor);
+                Metrics.stop(Metrics.STORE_SEARCH, searchStart, stories.size());
+                return stories;
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem searching the stored stories", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Return the full text query that matches words starting with each word of the given text,
+     * or an empty string if the text has no words. Everything but letters and digits separates
+     * words like in the index, so the text cannot use the query syntax.
+     */
+    static String matchExpression(String text) {
+        StringBuilder match = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(word).append('*');
+                word.setLength(0);
+            }
+        }
+        return match.toString();
+    }
+
+    /**
+     * Return up to the given number of stories of the query that come after the given story,
+     * like {@link #query}, but only as far as the store holds every story of the query.
+     */
+    public List<Story> queryCovered(Query query, Story after, int limit) {
+        if (after == null || !after.hasDate()) {
+            return Collections.emptyList();
+        }
+        try {
+            SQLiteDatabase db = mDbHelper.getReadableDatabase();
+            String time = String.valueOf(after.getTimeInMillis());
+            String sectionId = query.mSectionId != null ? query.mSectionId : ALL_SECTIONS;
+            Cursor cursor = db.rawQuery("SELECT MIN(" + COLUMN_OLDEST + ") FROM " + TABLE_COVERAGE
+                            + " WHERE " + COLUMN_SECTION_ID + " IN (?, ?) AND " + COLUMN_OLDEST
+                            + " <= ? AND " + COLUMN_NEWEST + " >= ?",
+                    new String[]{sectionId, ALL_SECTIONS, time, time});
+            try {
+                if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                    return Collections.emptyList();
+                }
+                return query(query, after, false, cursor.getLong(0), limit);
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem reading the stored coverage", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Return up to the given number of stories of the query, not older than the given time,
+     * that come after the given story, newest first, or that come before it if newer is true,
+     * closest first.
+     */
+    private List<Story> query(Query query, Story from, boolean newer, long minTime, int limit) {
+        StringBuilder selection = new StringBuilder(COLUMN_PUBLISHED + " <= ?");
+        ArrayList<String> args = new ArrayList<>();
+        args.add(String.valueOf(query.mMaxTime));
+        if (query.mSectionId != null) {
+            selection.append(" AND " + COLUMN_SECTION_ID + " = ?");
+            args.add(query.mSectionId);
+        }
+        if (minTime != Long.MIN_VALUE) {
+            selection.append(" AND " + COLUMN_PUBLISHED + " >= ?");
+            args.add(String.valueOf(minTime));
+        }
+
+        long queryStart = Metrics.start();
+        try {
+            SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+            // Continue from the given story, in the order of the index or against it
+            String comparison = newer ? " > ?" : " < ?";
+            if (from != null) {
+                String time = String.valueOf(from.getTimeInMillis());
+                long fromId = storyId(db, from.getUrl());
+                if (fromId >= 0) {
+                    selection.append(" AND (" + COLUMN_PUBLISHED + comparison + " OR ("
+                            + COLUMN_PUBLISHED + " = ? AND " + COLUMN_ID + comparison + "))");
+                    args.add(time);
+                    args.add(time);
+                    args.add(String.valueOf(fromId));
+                } else {
+                    selection.append(" AND " + COLUMN_PUBLISHED + comparison);
+                    args.add(time);
+                }
+            }
+
+            String order = newer ? " ASC" : " DESC";
+            Cursor cursor = db.query(TABLE_STORIES, STORY_COLUMNS, selection.toString(),
+                    args.toArray(new String[args.size()]), null, null,
+                    COLUMN_PUBLISHED + order + ", " + COLUMN_ID + order, String.valueOf(limit));
+            try {
+                List<Story> stories = readStories(db, cursor);
+                Metrics.stop(Metrics.STORE_QUERY, queryStart, stories.size());
+                return stories;
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem reading the stored stories", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Return the stories of the rows of the given cursor, with their authors.
+     */
+    private static List<Story> readStories(SQLiteDatabase db, Cursor cursor) {
+        int count = cursor.getCount();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+
+        long[] ids = new long[count];
+        HashMap<Long, ArrayList<String>> authorsById = new HashMap<>(count * 2);
+        StringBuilder placeholders = new StringBuilder();
+        String[] idArgs = new String[count];
+        int i = 0;
+        while (cursor.moveToNext()) {
+            ids[i] = cursor.getLong(0);
+            authorsById.put(ids[i], new ArrayList<String>());
+            placeholders.append(i == 0 ? "?" : ", ?");
+            idArgs[i] = String.valueOf(ids[i]);
+            i++;
+        }
+
+        // Fill in the authors of all stories at once, in the order of their bylines
+        Cursor authorCursor = db.rawQuery("SELECT sa." + COLUMN_STORY_ID + ", a." + COLUMN_NAME
+                + " FROM " + TABLE_STORY_AUTHORS + " sa JOIN " + TABLE_AUTHORS + " a ON a."
+                + COLUMN_ID + " = sa." + COLUMN_AUTHOR_ID + " WHERE sa." + COLUMN_STORY_ID
+                + " IN (" + placeholders + ") ORDER BY sa." + COLUMN_STORY_ID + ", sa."
+                + COLUMN_POSITION, idArgs);
+        try {
+            while (authorCursor.moveToNext()) {
+                authorsById.get(authorCursor.getLong(0)).add(authorCursor.getString(1));
+            }
+        } finally {
+            authorCursor.close();
+        }
+
+        // Build the stories with the names they share with the other stories
+        StoryDictionary dictionary = StoryDictionary.getInstance();
+        ArrayList<Story> stories = new ArrayList<>(count);
+        cursor.moveToPosition(-1);
+        i = 0;
+        while (cursor.moveToNext()) {
+            stories.add(new Story(cursor.getString(2), dictionary.authors(authorsById.get(ids[i])),
+                    cursor.getLong(5), cursor.getString(1), dictionary.name(cursor.getString(3)),
+                    dictionary.name(cursor.getString(4)), cursor.getString(6)));
+            i++;
+        }
+        return stories;
+    }
+
+    /**
+     * Insert the given stories or update the stored ones of the same web URL.
+     */
+    private static void putStories(SQLiteDatabase db, List<Story> stories) {
+        SQLiteStatement insertAuthor = db.compileStatement("INSERT OR IGNORE INTO "
+                + TABLE_AUTHORS + " (" + COLUMN_NAME + ") VALUES (?)");
+        SQLiteStatement selectAuthor = db.compileStatement("SELECT " + COLUMN_ID + " FROM "
+                + TABLE_AUTHORS + " WHERE " + COLUMN_NAME + " = ?");
+        SQLiteStatement insertStoryAuthor = db.compileStatement("INSERT INTO "
+                + TABLE_STORY_AUTHORS + " (" + COLUMN_STORY_ID + ", " + COLUMN_POSITION + ", "
+                + COLUMN_AUTHOR_ID + ") VALUES (?, ?, ?)");
+        SQLiteStatement deleteSearch = db.compileStatement("DELETE FROM " + TABLE_SEARCH
+                + " WHERE " + COLUMN_DOCID + " = ?");
+        SQLiteStatement insertSearch = db.compileStatement("INSERT INTO " + TABLE_SEARCH
+                + " (" + COLUMN_DOCID + ", " + COLUMN_TITLE + ", " + COLUMN_AUTHORS + ", "
+                + COLUMN_SECTION + ") VALUES (?, ?, ?, ?)");
+        HashMap<String, Long> authorIds = new HashMap<>();
+        try {
+            for (Story story : stories) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_URL, story.getUrl());
+                values.put(COLUMN_TITLE, story.getTitle());
+                values.put(COLUMN_SECTION_ID, story.getSectionId());
+                values.put(COLUMN_SECTION, story.getSection());
+                values.put(COLUMN_PUBLISHED, story.getTimeInMillis());
+                values.put(COLUMN_THUMBNAIL, story.getThumnailUrl());
+
+                long storyId = db.insertWithOnConflict(TABLE_STORIES, null, values,
+                        SQLiteDatabase.CONFLICT_IGNORE);
+                if (storyId == -1) {
+                    db.update(TABLE_STORIES, values, COLUMN_URL + " = ?",
+                            new String[]{story.getUrl()});
+                    storyId = storyId(db, story.getUrl());
+                    db.delete(TABLE_STORY_AUTHORS, COLUMN_STORY_ID + " = ?",
+                            new String[]{String.valueOf(storyId)});
+                }
+
+                // Every name is stored once and referenced by the stories
+                List<String> authors = story.getAuthors();
+                for (int position = 0; position < authors.size(); position++) {
+                    String author = authors.get(position);
+                    Long authorId = authorIds.get(author);
+                    if (authorId == null) {
+                        insertAuthor.bindString(1, author);
+                        insertAuthor.executeInsert();
+                        selectAuthor.bindString(1, author);
+                        authorId = selectAuthor.simpleQueryForLong();
+                        authorIds.put(author, authorId);
+                    }
+                    insertStoryAuthor.bindLong(1, storyId);
+                    insertStoryAuthor.bindLong(2, position);
+                    insertStoryAuthor.bindLong(3, authorId);
+                    insertStoryAuthor.executeInsert();
+                }
+
+                // Index the story again with its current text
+                deleteSearch.bindLong(1, storyId);
+                deleteSearch.executeUpdateDelete();
+                insertSearch.bindLong(1, storyId);
+                insertSearch.bindString(2, story.getTitle());
+                insertSearch.bindString(3, TextUtils.join(", ", authors));
+                insertSearch.bindString(4, story.getSection());
+                insertSearch.executeInsert();
+            }
+        } finally {
+            insertAuthor.close();
+            selectAuthor.close();
+            insertStoryAuthor.close();
+            deleteSearch.close();
+            insertSearch.close();
+        }
+    }
+
+    /**
+     * Remember the time range of the section of the given query URL that the given stories
+     * cover, merged with the ranges it overlaps.
+     */
+    private static void putCoverage(SQLiteDatabase db, String requestUrl, List<Story> stories,
+                                    Story newerStory) {
+        long oldest = Long.MAX_VALUE;
+        long newest = newerStory != null && newerStory.hasDate()
+                ? newerStory.getTimeInMillis() : Long.MIN_VALUE;
+        for (Story story : stories) {
+            if (story.hasDate()) {
+                oldest = Math.min(oldest, story.getTimeInMillis());
+                newest = Math.max(newest, story.getTimeInMillis());
+            }
+        }
+        if (oldest > newest) {
+            return;
+        }
+
+        String sectionId = Uri.parse(requestUrl).getQueryParameter("section");
+        if (TextUtils.isEmpty(sectionId)) {
+            sectionId = ALL_SECTIONS;
+        }
+        String[] overlapArgs = {sectionId, String.valueOf(oldest), String.valueOf(newest)};
+        String overlap = COLUMN_SECTION_ID + " = ? AND " + COLUMN_NEWEST + " >= ? AND "
+                + COLUMN_OLDEST + " <= ?";
+        Cursor cursor = db.query(TABLE_COVERAGE, new String[]{"MIN(" + COLUMN_OLDEST + ")",
+                "MAX(" + COLUMN_NEWEST + ")"}, overlap, overlapArgs, null, null, null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                oldest = Math.min(oldest, cursor.getLong(0));
+                newest = Math.max(newest, cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        db.delete(TABLE_COVERAGE, overlap, overlapArgs);
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_SECTION_ID, sectionId);
+        values.put(COLUMN_OLDEST, oldest);
+        values.put(COLUMN_NEWEST, newest);
+        db.insert(TABLE_COVERAGE, null, values);
+    }
+
+    /**
+     * Drop the oldest stories beyond the maximum number, the authors no story refers to
+     * any more, their index entries and the coverage of the dropped time range.
+     */
+    private void trim(SQLiteDatabase db) {
+        if (DatabaseUtils.queryNumEntries(db, TABLE_STORIES) <= mMaxStories) {
+            return;
+        }
+
+        Cursor cursor = db.query(TABLE_STORIES, new String[]{COLUMN_PUBLISHED}, null, null,
+                null, null, COLUMN_PUBLISHED + " DESC, " + COLUMN_ID + " DESC",
+                (mMaxStories - 1) + ", 1");
+        long oldestKept;
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            oldestKept = cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+
+        String[] oldestKeptArgs = {String.valueOf(oldestKept)};
+        db.delete(TABLE_STORIES, COLUMN_PUBLISHED + " < ?", oldestKeptArgs);
+        db.delete(TABLE_SEARCH, COLUMN_DOCID + " NOT IN (SELECT " + COLUMN_ID + " FROM "
+                + TABLE_STORIES + ")", null);
+        db.delete(TABLE_AUTHORS, COLUMN_ID + " NOT IN (SELECT " + COLUMN_AUTHOR_ID + " FROM "
+                + TABLE_STORY_AUTHORS + ")", null);
+        db.delete(TABLE_COVERAGE, COLUMN_NEWEST + " < ?", oldestKeptArgs);
+        db.execSQL("UPDATE " + TABLE_COVERAGE + " SET " + COLUMN_OLDEST + " = ? WHERE "
+                + COLUMN_OLDEST + " < ?", new Object[]{oldestKept, oldestKept});
+    }
+
+    /**
+     * Return the row id of the stored story of the given web URL, or -1 if it is not stored.
+     */
+    private static long storyId(SQLiteDatabase db, String url) {
+        Cursor cursor = db.query(TABLE_STORIES, new String[]{COLUMN_ID}, COLUMN_URL + " = ?",
+                new String[]{url}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+}
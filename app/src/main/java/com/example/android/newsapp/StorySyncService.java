@@ -0,0 +1,147 @@
+package com.example.android.newsapp;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the stories of the chosen sections in the background, so the story list can show
+ * them from the {@link StoryStore} and the {@link StoryCache} as soon as it is opened.
+ * <p>
+ * The queries of all chosen sections are fetched in one run of a periodic job, which only runs
+ * under the constraints chosen in the settings, like an unmetered network or while charging.
+ * Unchanged pages are revalidated with conditional requests.
+ */
+public class StorySyncService extends JobService {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = StorySyncService.class.getSimpleName();
+
+    /**
+     * Id of the periodic sync job
+     */
+    private static final int SYNC_JOB_ID = 1;
+
+    /**
+     * Part of the sync interval at the end of which the job may run, so the system can run it
+     * together with the jobs of other apps
+     */
+    private static final int FLEX_DIVISOR = 4;
+
+    /* Token of the running sync, null if no sync is running */
+    private CancellationToken mSyncToken;
+
+    /**
+     * Schedule the periodic sync with the interval and constraints of the settings, replacing
+     * the scheduled one, or cancel it if the sync is turned off.
+     */
+    public static void schedule(Context context) {
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        long intervalHours = Long.parseLong(sharedPrefs.getString(
+                context.getString(R.string.settings_sync_interval_key),
+                context.getString(R.string.settings_sync_interval_default)));
+        if (intervalHours <= 0) {
+            jobScheduler.cancel(SYNC_JOB_ID);
+            return;
+        }
+
+        boolean unmetered = sharedPrefs.getBoolean(
+                context.getString(R.string.settings_sync_unmetered_key),
+                context.getResources().getBoolean(R.bool.settings_sync_unmetered_default));
+        boolean charging = sharedPrefs.getBoolean(
+                context.getString(R.string.settings_sync_charging_key),
+                context.getResources().getBoolean(R.bool.settings_sync_charging_default));
+
+        long intervalMillis = TimeUnit.HOURS.toMillis(intervalHours);
+        JobInfo jobInfo = new JobInfo.Builder(SYNC_JOB_ID,
+                new ComponentName(context, StorySyncService.class))
+                .setPeriodic(intervalMillis, intervalMillis / FLEX_DIVISOR)
+                .setRequiredNetworkType(unmetered
+                        ? JobInfo.NETWORK_TYPE_UNMETERED : JobInfo.NETWORK_TYPE_ANY)
+                .setRequiresCharging(charging)
+                .setPersisted(true)
+                .build();
+        jobScheduler.schedule(jobInfo);
+    }
+
+    /**
+     * Schedule the periodic sync unless it has been scheduled before.
+     */
+    public static void ensureScheduled(Context context) {
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (jobScheduler.getPendingJob(SYNC_JOB_ID) == null) {
+            schedule(context);
+        }
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final List<String> urls = StoryQueries.getQueryUrls(this);
+        final CancellationToken token = new CancellationToken();
+        mSyncToken = token;
+
+        // The sync comes after the loads of the story list
+        LoadExecutor.getInstance().execute(LoadExecutor.PRIORITY_BACKGROUND, token,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        boolean synced = syncQueries(urls, token);
+                        if (!token.isCanceled()) {
+                            jobFinished(params, !synced);
+                        }
+                    }
+                });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints are not met any more, try again when they are
+        if (mSyncToken != null) {
+            mSyncToken.cancel();
+            mSyncToken = null;
+        }
+        return true;
+    }
+
+    /**
+     * Fetch the first page of the given queries into the caches, one after the other.
+     * Return true if at least one of them has been fetched.
+     */
+    private boolean syncQueries(List<String> urls, CancellationToken token) {
+        StoryCache cache = StoryCache.getInstance(this);
+        StoryMemoryCache memoryCache = StoryMemoryCache.getInstance();
+        StoryStore store = StoryStore.getInstance(this);
+        boolean synced = false;
+        for (String url : urls) {
+            StoryPage storyPage = QueryUtils.fetchStoryPage(url, cache.get(url), null, token);
+            if (token.isCanceled()) {
+                return synced;
+            }
+            if (storyPage == null) {
+                Log.e(LOG_TAG, "Problem syncing the query " + url);
+                continue;
+            }
+            cache.put(url, storyPage);
+            memoryCache.put(url, storyPage);
+            store.putPage(url, storyPage, null);
+            synced = true;
+        }
+        return synced;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.widget.ImageView;
+
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.NetworkPolicy;
+import com.squareup.picasso.Picasso;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+
+/**
+ * Loads the thumbnails of the story list.
+ * <p>
+ * Thumbnails are decoded at the size of the list item image instead of their full size and
+ * without alpha channel. Decoded thumbnails are kept in a memory cache bounded in bytes, and the
+ * downloaded images in an HTTP disk cache in the cache directory of the app, so they survive the
+ * death of the process. All list items share one {@link Picasso} instance.
+ */
+public final class ThumbnailLoader {
+
+    /**
+     * Name of the disk cache directory
+     */
+    private static final String CACHE_DIR = "thumbnails";
+
+    /**
+     * Maximum size of the downloaded images on disk
+     */
+    private static final long MAX_DISK_CACHE_BYTES = 20 * 1024 * 1024;
+
+    /**
+     * Part of the maximum heap that decoded thumbnails may use
+     */
+    private static final int MEMORY_CACHE_HEAP_DIVISOR = 8;
+
+    /**
+     * Tag of the prefetch requests, so they can be cancelled together
+     */
+    private static final Object PREFETCH_TAG = new Object();
+
+    private static ThumbnailLoader sInstance;
+
+    private final Picasso mPicasso;
+
+    /* Size of the list item image in pixels */
+    private final int mTargetSize;
+
+    private ThumbnailLoader(Context context) {
+        File directory = new File(context.getCacheDir(), CACHE_DIR);
+        int memoryCacheBytes = (int) (Runtime.getRuntime().maxMemory() / MEMORY_CACHE_HEAP_DIVISOR);
+        mPicasso = new Picasso.Builder(context)
+                .downloader(new OkHttpDownloader(directory, MAX_DISK_CACHE_BYTES))
+                .memoryCache(new LruCache(memoryCacheBytes))
+                .defaultBitmapConfig(Bitmap.Config.RGB_565)
+                .build();
+        mTargetSize = context.getResources().getDimensionPixelSize(R.dimen.list_image_size);
+    }
+
+    /**
+     * Return the process wide {@link ThumbnailLoader}.
+     */
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Show the thumbnail of the given URL in the given view, or the placeholder if the URL is
+     * null. A request still running for the view is cancelled.
+     */
+    public void load(String url, ImageView imageView) {
+        if (url == null) {
+            mPicasso.cancelRequest(imageView);
+            imageView.setImageResource(R.color.thumbnailPlaceholder);
+            return;
+        }
+        mPicasso.load(url)
+                .resize(mTargetSize, mTargetSize)
+                .centerCrop()
+                .onlyScaleDown()
+                .placeholder(R.color.thumbnailPlaceholder)
+                .into(imageView);
+    }
+
+    /**
+     * Cancel the request running for the given view, if any.
+     */
+    public void cancel(ImageView imageView) {
+        mPicasso.cancelRequest(imageView);
+    }
+
+    /**
+     * Decode the thumbnail of the given URL into the memory cache with a low priority,
+     * so it is there when its list item is shown.
+     */
+    public void prefetch(String url) {
+        if (url == null) {
+            return;
+        }
+        mPicasso.load(url)
+                .resize(mTargetSize, mTargetSize)
+                .centerCrop()
+                .onlyScaleDown()
+                .priority(Picasso.Priority.LOW)
+                .tag(PREFETCH_TAG)
+                .fetch();
+    }
+
+    /**
+     * Cancel all prefetch requests that are still running.
+     */
+    public void cancelPrefetches() {
+        mPicasso.cancelTag(PREFETCH_TAG);
+    }
+
+    /**
+     * {@link Downloader} that loads images with OkHttp through an HTTP disk cache.
+     */
+    private static class OkHttpDownloader implements Downloader {
+
+        private final OkHttpClient mClient;
+
+        OkHttpDownloader(File directory, long maxSize) {
+            mClient = new OkHttpClient.Builder()
+                    .cache(new Cache(directory, maxSize))
+                    .build();
+        }
+
+        @Override
+        public Response load(Uri uri, int networkPolicy) throws IOException {
+            Request.Builder builder = new Request.Builder().url(uri.toString());
+            if (networkPolicy != 0) {
+                if (NetworkPolicy.isOfflineOnly(networkPolicy)) {
+                    builder.cacheControl(CacheControl.FORCE_CACHE);
+                } else {
+                    CacheControl.Builder cacheControl = new CacheControl.Builder();
+                    if (!NetworkPolicy.shouldReadFromDiskCache(networkPolicy)) {
+                        cacheControl.noCache();
+                    }
+                    if (!NetworkPolicy.shouldWriteToDiskCache(networkPolicy)) {
+                        cacheControl.noStore();
+                    }
+                    builder.cacheControl(cacheControl.build());
+                }
+            }
+
+            okhttp3.Response response = mClient.newCall(builder.build()).execute();
+            int code = response.code();
+            if (code >= 300) {
+                response.body().close();
+                throw new ResponseException(code + " " + response.message(), networkPolicy, code);
+            }
+
+            ResponseBody body = response.body();
+            boolean fromCache = response.cacheResponse() != null;
+            return new Response(body.byteStream(), fromCache, body.contentLength());
+        }
+
+        @Override
+        public void shutdown() {
+            try {
+                mClient.cache().close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.android.newsapp;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Prefetches the thumbnails of the rows that are about to scroll into view.
+ * <p>
+ * The rows ahead in the direction of the scroll are prefetched, and the prefetches of the other
+ * direction are cancelled when the direction changes.
+ */
+public class ThumbnailPrefetcher extends RecyclerView.OnScrollListener {
+
+    /**
+     * Number of rows beyond the visible ones whose thumbnails are prefetched
+     */
+    private static final int PREFETCH_ROWS = 6;
+
+    private final ThumbnailLoader mThumbnailLoader;
+    private final StoryAdapter mAdapter;
+    private final LinearLayoutManager mLayoutManager;
+
+    /* Direction of the last scroll, 1 for down and -1 for up */
+    private int mDirection;
+
+    /* First and last position that has been prefetched in this direction */
+    private int mFirstPrefetched = -1;
+    private int mLastPrefetched = -1;
+
+    /**
+     * Constructs a new {@link ThumbnailPrefetcher}.
+     *
+     * @param thumbnailLoader loads the thumbnails
+     * @param adapter         holds the rows of the list
+     * @param layoutManager   lays out the list
+     */
+    public ThumbnailPrefetcher(ThumbnailLoader thumbnailLoader, StoryAdapter adapter,
+                               LinearLayoutManager layoutManager) {
+        mThumbnailLoader = thumbnailLoader;
+        mAdapter = adapter;
+        mLayoutManager = layoutManager;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0) {
+            return;
+        }
+        int direction = dy > 0 ? 1 : -1;
+        if (direction != mDirection) {
+            mThumbnailLoader.cancelPrefetches();
+            mDirection = direction;
+            mFirstPrefetched = -1;
+            mLastPrefetched = -1;
+        }
+
+        int itemCount = mAdapter.getItemCount();
+        int first;
+        int last;
+        if (direction > 0) {
+            first = mLayoutManager.findLastVisibleItemPosition() + 1;
+            last = Math.min(first + PREFETCH_ROWS, itemCount) - 1;
+        } else {
+            last = mLayoutManager.findFirstVisibleItemPosition() - 1;
+            first = Math.max(last - PREFETCH_ROWS + 1, 0);
+        }
+
+        for (int position = first; position <= last; position++) {
+            // Rows that have been prefetched in this direction are skipped
+            if (position >= mFirstPrefetched && position <= mLastPrefetched) {
+                continue;
+            }
+            mThumbnailLoader.prefetch(mAdapter.getItem(position).getThumbnailUrl());
+        }
+        if (first <= last) {
+            mFirstPrefetched = first;
+            mLastPrefetched = last;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.android.newsapp;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * End-to-end test of {@link ArchiveIngest} against a {@link MockGuardianServer}.
+ * <p>
+ * The archive is ingested twice into the same new directory. The first run fetches every page,
+ * the second one has to find all of them in the checkpoint and fetch nothing.
+ * <p>
+ * Run with {@code ./gradlew :benchmark:ingestReplay
+ * -PingestReplayArgs="sections=politics,world from=2017-01-01 to=2017-03-31 mockTotal=1000"}.
+ * The arguments that start with "mock" are those of {@link LoadTestDriver}, the others those of
+ * {@link ArchiveIngest}, where url and out are filled in.
+ */
+public final class ArchiveReplay {
+
+    private ArchiveReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ArrayList<String> mockArgs = new ArrayList<>();
+        ArrayList<String> ingestArgs = new ArrayList<>();
+        mockArgs.add("mockTotal=1000");
+        ingestArgs.add("rate=0");
+        for (String arg : args) {
+            (arg.startsWith("mock") ? mockArgs : ingestArgs).add(arg);
+        }
+
+        MockGuardianServer server = LoadTestDriver.Options.parse(
+                mockArgs.toArray(new String[mockArgs.size()])).startServer();
+        File out = Files.createTempDirectory("archive").toFile();
+        ingestArgs.add("url=" + server.getSearchUrl());
+        ingestArgs.add("out=" + out);
+        ArchiveIngest.Options options = ArchiveIngest.Options.parse(
+                ingestArgs.toArray(new String[ingestArgs.size()]));
+        ArchiveIngest.setTransport(options.mRequestsPerSecond);
+
+        try {
+            ArchiveIngest.Report first = ingest(options, out);
+            System.out.println("First run");
+            System.out.println(first);
+            long requests = server.getRequestCount();
+
+            ArchiveIngest.Report second = ingest(options, out);
+            System.out.println("Resumed run");
+            System.out.println(second);
+            System.out.println(String.format(Locale.US,
+                    "server requests %d, injected errors %d, requests of the resumed run %d",
+                    server.getRequestCount(), server.getErrorCount(),
+                    server.getRequestCount() - requests));
+            if (first.getPagesFailed() == 0 && second.getPagesFetched() > 0) {
+                throw new IllegalStateException("The resumed run fetched stored pages again");
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static ArchiveIngest.Report ingest(ArchiveIngest.Options options, File out)
+            throws Exception {
+        ArchiveStore store = ArchiveStore.open(out);
+        try {
+            return new ArchiveIngest(options, store, new CancellationToken()).run();
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.android.newsapp;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Guardian search responses for the benchmarks.
+ * <p>
+ * The responses have the exact shape of a recorded {@code /search} response with
+ * {@code show-fields=thumbnail} and {@code show-tags=contributor}, including the fields the app
+ * does not read, and are built the same way on every run so every run parses the same bytes.
+ */
+final class GuardianPayloads {
+
+    private static final String[][] SECTIONS = {
+            {"politics", "Politics"},
+            {"society", "Society"},
+            {"technology", "Technology"},
+            {"environment", "Environment"},
+            {"world", "World news"},
+            {"business", "Business"},
+    };
+
+    private static final String[] CONTRIBUTORS = {
+            "Heather Stewart", "Rowena Mason", "Peter Walker", "Jessica Elgot", "Anushka Asthana",
+            "Damian Carrington", "Alex Hern", "Samuel Gibbs", "Patrick Butler", "Denis Campbell",
+            "Fiona Harvey", "Julia Kollewe",
+    };
+
+    private GuardianPayloads() {
+    }
+
+    /**
+     * Return a search response with the given number of results as a JSON string.
+     */
+    static String json(int results) {
+        return json(results, 1, 25318 / results + 1);
+    }
+
+    /**
+     * Return the given page of a search response with the given number of results per page
+     * as a JSON string.
+     */
+    static String json(int results, int currentPage, int pages) {
+        StringBuilder builder = new StringBuilder(results * 1600);
+        builder.append("{\"response\":{\"status\":\"ok\",\"userTier\":\"developer\",")
+                .append("\"total\":").append(results * pages)
+                .append(",\"startIndex\":").append((currentPage - 1) * results + 1)
+                .append(",\"pageSize\":").append(results)
+                .append(",\"currentPage\":").append(currentPage)
+                .append(",\"pages\":").append(pages)
+                .append(",\"orderBy\":\"newest\",\"results\":[");
+        for (int i = 0; i < results; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            appendResult(builder, (currentPage - 1) * results + i);
+        }
+        builder.append("]}}");
+        return builder.toString();
+    }
+
+    /**
+     * Return a search response with the given number of results as UTF-8 bytes.
+     */
+    static byte[] bytes(int results) {
+        return json(results).getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Return the result with the given index, counted over all pages, as a JSON object.
+     */
+    static String result(int i) {
+        StringBuilder builder = new StringBuilder(1600);
+        appendResult(builder, i);
+        return builder.toString();
+    }
+
+    /**
+     * Return the number of sections of the results.
+     */
+    static int sectionCount() {
+        return SECTIONS.length;
+    }
+
+    /**
+     * Return the index of the section with the given id, so that the results with this index
+     * modulo {@link #sectionCount()} are in it, or -1 if no result is in it.
+     */
+    static int sectionIndex(String sectionId) {
+        for (int i = 0; i < SECTIONS.length; i++) {
+            if (SECTIONS[i][0].equals(sectionId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendResult(StringBuilder builder, int i) {
+        String[] section = SECTIONS[i % SECTIONS.length];
+        String slug = String.format(Locale.US, "2017/jul/%02d/story-number-%d-about-the-news",
+                i % 28 + 1, i);
+        String id = section[0] + "/" + slug;
+        builder.append("{\"id\":\"").append(id).append("\",")
+                .append("\"type\":\"article\",")
+                .append("\"sectionId\":\"").append(section[0]).append("\",")
+                .append("\"sectionName\":\"").append(section[1]).append("\",")
+                .append("\"webPublicationDate\":\"")
+                .append(String.format(Locale.US, "2017-07-%02dT%02d:%02d:%02dZ",
+                        i % 28 + 1, i % 24, i % 60, (i * 7) % 60))
+                .append("\",")
+                .append("\"webTitle\":\"Story number ").append(i)
+                .append(" about the news of the day, with a headline of a usual length\",")
+                .append("\"webUrl\":\"https://www.theguardian.com/").append(id).append("\",")
+                .append("\"apiUrl\":\"https://content.guardianapis.com/").append(id).append("\",")
+                .append("\"fields\":{\"thumbnail\":\"https://media.guim.co.uk/")
+                .append(Integer.toHexString(i * 7919 + 104729))
+                .append("/0_0_3500_2100/500.jpg\"},")
+                .append("\"tags\":[");
+        int authors = i % 3 + 1;
+        for (int j = 0; j < authors; j++) {
+            if (j > 0) {
+                builder.append(',');
+            }
+            String name = CONTRIBUTORS[(i + j * 5) % CONTRIBUTORS.length];
+            String profile = name.toLowerCase(Locale.US).replace(' ', '-');
+            builder.append("{\"id\":\"profile/").append(profile).append("\",")
+                    .append("\"type\":\"contributor\",")
+                    .append("\"webTitle\":\"").append(name).append("\",")
+                    .append("\"webUrl\":\"https://www.theguardian.com/profile/")
+                    .append(profile).append("\",")
+                    .append("\"apiUrl\":\"https://content.guardianapis.com/profile/")
+                    .append(profile).append("\",")
+                    .append("\"references\":[],")
+                    .append("\"bio\":\"<p>").append(name)
+                    .append(" is a reporter for the Guardian</p>\",")
+                    .append("\"bylineImageUrl\":\"https://uploads.guim.co.uk/2017/01/01/")
+                    .append(profile).append(".jpg\",")
+                    .append("\"firstName\":\"").append(name.substring(0, name.indexOf(' ')))
+                    .append("\",")
+                    .append("\"lastName\":\"").append(name.substring(name.indexOf(' ') + 1))
+                    .append("\"}");
+        }
+        builder.append("],\"isHosted\":false,\"pillarId\":\"pillar/news\",")
+                .append("\"pillarName\":\"News\"}");
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of parsing a large feed of cached pages with and without the
+ * {@link StoryDictionary}. Next to the time, the heap the parsed feed keeps is measured once
+ * at the end of every trial and printed with the bytes the dictionary reports as saved. The
+ * serial collector of small machines does not give a stable used heap, so G1 is used.
+ */
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseG1GC")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HeapBenchmark {
+
+    private static final int RESULTS_PER_PAGE = 200;
+
+    @Param({"true", "false"})
+    public boolean dictionary;
+
+    @Param({"20"})
+    public int pages;
+
+    private byte[][] mPages;
+
+    @Setup
+    public void setUp() {
+        mPages = new byte[pages][];
+        for (int i = 0; i < pages; i++) {
+            mPages[i] = GuardianPayloads.json(RESULTS_PER_PAGE, i + 1, pages)
+                    .getBytes(Charset.forName("UTF-8"));
+        }
+        StoryDictionary.setEnabled(dictionary);
+        StoryDictionary.getInstance().clear();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        StoryDictionary.getInstance().clear();
+        long savedBefore = StoryDictionary.getInstance().getSavedBytes();
+        long usedBefore = usedHeap();
+        List<StoryPage> feed = parseFeed();
+        long retained = usedHeap() - usedBefore;
+        long saved = StoryDictionary.getInstance().getSavedBytes() - savedBefore;
+
+        int stories = feed.size() * RESULTS_PER_PAGE;
+        System.out.println(String.format(Locale.US,
+                "%nRetained heap of %d stories, dictionary %b: %d bytes, %d per story, "
+                        + "%d bytes reported saved", stories, dictionary, retained,
+                retained / stories, saved));
+        StoryDictionary.setEnabled(true);
+    }
+
+    @Benchmark
+    public List<StoryPage> parseFeed() throws IOException {
+        ArrayList<StoryPage> feed = new ArrayList<>(mPages.length);
+        for (byte[] page : mPages) {
+            feed.add(StoryStreamParser.parse(new ByteArrayInputStream(page), null));
+        }
+        return feed;
+    }
+
+    /**
+     * Return the used heap once collecting the garbage does not free anything more.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long nowUsed = runtime.totalMemory() - runtime.freeMemory();
+            if (nowUsed >= used) {
+                break;
+            }
+            used = nowUsed;
+        }
+        return used;
+    }
+}
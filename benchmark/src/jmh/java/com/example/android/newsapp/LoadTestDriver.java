@@ -0,0 +1,248 @@
+package com.example.android.newsapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the fetch and parse pipeline of the app against a {@link MockGuardianServer}.
+ * <p>
+ * Many sessions run at the same time, each of them pages through its own queries with
+ * {@link QueryUtils#fetchStoryPage} over the {@link OkHttpTransport} and the
+ * {@link ResilientTransport}, like the story list does. At the end the latency percentiles of
+ * the page requests and the throughput are printed.
+ * <p>
+ * Run with {@code ./gradlew :benchmark:loadTest -PloadTestArgs="sessions=32 mockLatency=80"}.
+ * The arguments are name=value pairs, see {@link Options}.
+ */
+public final class LoadTestDriver {
+
+    private LoadTestDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        MockGuardianServer server = options.mUrl == null ? options.startServer() : null;
+        String searchUrl = server != null ? server.getSearchUrl() : options.mUrl;
+
+        // The request budget of the transport protects the guardian, not a local server
+        QueryUtils.setTransport(new ResilientTransport(new OkHttpTransport(),
+                ResilientTransport.SYSTEM_CLOCK, new Random(),
+                ResilientTransport.DEFAULT_MAX_ATTEMPTS,
+                ResilientTransport.DEFAULT_BASE_BACKOFF_MILLIS,
+                ResilientTransport.DEFAULT_MAX_BACKOFF_MILLIS,
+                ResilientTransport.DEFAULT_FAILURE_THRESHOLD,
+                ResilientTransport.DEFAULT_OPEN_MILLIS, Integer.MAX_VALUE, 1, 0));
+        try {
+            run(options, searchUrl, server);
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    private static void run(final Options options, final String searchUrl,
+                            MockGuardianServer server) throws InterruptedException {
+        final long[][] latencies = new long[options.mSessions][];
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong stories = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService sessions = Executors.newFixedThreadPool(options.mSessions);
+        for (int i = 0; i < options.mSessions; i++) {
+            final int session = i;
+            sessions.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    latencies[session] = runSession(options, searchUrl, session, failures, stories);
+                }
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        sessions.shutdown();
+        sessions.awaitTermination(1, TimeUnit.HOURS);
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // Percentiles of all requests of all sessions
+        int requests = 0;
+        for (long[] sessionLatencies : latencies) {
+            requests += sessionLatencies.length;
+        }
+        long[] all = new long[requests];
+        int position = 0;
+        for (long[] sessionLatencies : latencies) {
+            System.arraycopy(sessionLatencies, 0, all, position, sessionLatencies.length);
+            position += sessionLatencies.length;
+        }
+        Arrays.sort(all);
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.println(String.format(Locale.US, "Load test of %s", searchUrl));
+        System.out.println(String.format(Locale.US,
+                "%d sessions x %d queries x %d pages of %d stories",
+                options.mSessions, options.mQueries, options.mPages, options.mPageSize));
+        System.out.println(String.format(Locale.US,
+                "requests %d, failed %d, stories %d in %.2f s",
+                requests, failures.get(), stories.get(), seconds));
+        System.out.println(String.format(Locale.US,
+                "latency ms p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+                percentile(all, 50), percentile(all, 90), percentile(all, 99),
+                percentile(all, 100)));
+        System.out.println(String.format(Locale.US,
+                "throughput %.1f requests/s, %.1f stories/s",
+                requests / seconds, stories.get() / seconds));
+        System.out.println(String.format(Locale.US, "payload %.0f bytes per story",
+                QueryUtils.getPayloadBytesPerStory()));
+        if (server != null) {
+            System.out.println(String.format(Locale.US,
+                    "server requests %d, injected errors %d, retries %d",
+                    server.getRequestCount(), server.getErrorCount(),
+                    server.getRequestCount() - requests));
+        }
+    }
+
+    /**
+     * Page through the queries of the given session and return the latency of every page
+     * request in nanoseconds.
+     */
+    private static long[] runSession(Options options, String searchUrl, int session,
+                                     AtomicLong failures, AtomicLong stories) {
+        long[] latencies = new long[options.mQueries * options.mPages];
+        int request = 0;
+        for (int query = 0; query < options.mQueries; query++) {
+            for (int page = 1; page <= options.mPages; page++) {
+                // Every session has its own queries, so no request is shared with another one
+                String url = searchUrl + "?api-key=test&show-fields=" + QueryUtils.SHOW_FIELDS
+                        + "&show-tags=" + QueryUtils.SHOW_TAGS
+                        + "&q=session-" + session + "-query-" + query
+                        + "&page-size=" + options.mPageSize + "&page=" + page;
+                long startNanos = System.nanoTime();
+                StoryPage storyPage = QueryUtils.fetchStoryPage(url, null, null,
+                        new CancellationToken());
+                latencies[request++] = System.nanoTime() - startNanos;
+                if (storyPage == null || storyPage.getStories().isEmpty()) {
+                    failures.incrementAndGet();
+                } else {
+                    stories.addAndGet(storyPage.getStories().size());
+                }
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Return the given percentile of the sorted nanoseconds in milliseconds, by nearest rank.
+     */
+    private static double percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    /**
+     * Options of a load test, given as name=value arguments:
+     * <ul>
+     * <li>sessions, queries, pages and pageSize shape the load</li>
+     * <li>url is the search to load, no mock server is started if it is given</li>
+     * <li>mockPort, mockThreads, mockLatency in milliseconds, mockBandwidth in bytes per second,
+     * mockErrors as a share from 0 to 1, mockTotal results and mockRecordings, a directory of
+     * recorded search responses, configure the mock server</li>
+     * </ul>
+     */
+    static final class Options {
+
+        int mSessions = 16;
+        int mQueries = 4;
+        int mPages = 5;
+        int mPageSize = 20;
+        String mUrl;
+
+        int mMockPort;
+        int mMockThreads = 64;
+        long mMockLatencyMillis = 50;
+        long mMockBytesPerSecond;
+        double mMockErrorRate;
+        int mMockTotalResults;
+        String mMockRecordings;
+
+        static Options parse(String[] args) {
+            HashMap<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Not a name=value argument: " + arg);
+                }
+                values.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+
+            Options options = new Options();
+            options.mSessions = intValue(values, "sessions", options.mSessions);
+            options.mQueries = intValue(values, "queries", options.mQueries);
+            options.mPages = intValue(values, "pages", options.mPages);
+            options.mPageSize = intValue(values, "pageSize", options.mPageSize);
+            options.mUrl = values.remove("url");
+            options.mMockPort = intValue(values, "mockPort", options.mMockPort);
+            options.mMockThreads = intValue(values, "mockThreads", options.mMockThreads);
+            options.mMockLatencyMillis = longValue(values, "mockLatency", options.mMockLatencyMillis);
+            options.mMockBytesPerSecond = longValue(values, "mockBandwidth", 0);
+            String errorRate = values.remove("mockErrors");
+            if (errorRate != null) {
+                options.mMockErrorRate = Double.parseDouble(errorRate);
+            }
+            options.mMockTotalResults = intValue(values, "mockTotal", 0);
+            options.mMockRecordings = values.remove("mockRecordings");
+            if (!values.isEmpty()) {
+                throw new IllegalArgumentException("Unknown arguments " + values.keySet());
+            }
+            return options;
+        }
+
+        /**
+         * Start a mock server configured by these options.
+         */
+        MockGuardianServer startServer() throws IOException {
+            List<String> recordedResults = mMockRecordings != null
+                    ? MockGuardianServer.loadRecordedResults(new File(mMockRecordings)) : null;
+            MockGuardianServer server = new MockGuardianServer(mMockPort, mMockThreads,
+                    recordedResults);
+            server.setLatencyMillis(mMockLatencyMillis);
+            server.setBytesPerSecond(mMockBytesPerSecond);
+            server.setErrorRate(mMockErrorRate);
+            if (mMockTotalResults > 0) {
+                server.setTotalResults(mMockTotalResults);
+            }
+            server.start();
+            return server;
+        }
+
+        private static int intValue(HashMap<String, String> values, String name,
+                                    int defaultValue) {
+            String value = values.remove(name);
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        }
+
+        private static long longValue(HashMap<String, String> values, String name,
+                                      long defaultValue) {
+            String value = values.remove(name);
+            return value != null ? Long.parseLong(value) : defaultValue;
+        }
+    }
+}
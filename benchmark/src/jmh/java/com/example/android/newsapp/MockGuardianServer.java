@@ -0,0 +1,442 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the guardian {@code /search} endpoint, for end-to-end tests without the
+ * network.
+ * <p>
+ * It replays the results of recorded search responses, or the results of
+ * {@link GuardianPayloads} if there are no recordings, and pages through them like the guardian
+ * does with the {@code page} and {@code page-size} parameters. Every response can be delayed,
+ * its body throttled to a bandwidth, and a share of the requests can fail with a 429, 500 or 503.
+ * Generated results honour the {@code section} parameter, and every {@code from-date} of the
+ * year has results of its own, so archive queries of different windows find different stories.
+ * <p>
+ * Like the guardian, it compresses the bodies with gzip for clients that accept it, and sends
+ * an ETag and a Last-Modified header with every page. A conditional request for a page that is
+ * unchanged is answered with 304 Not Modified and no body.
+ * <p>
+ * Run it on its own with {@code ./gradlew :benchmark:mockGuardian -PmockArgs="mockPort=8080"}
+ * and build the app with {@code -PnewsRequestUrl=http://10.0.2.2:8080/search} to use it from
+ * the emulator. The arguments are those of {@link LoadTestDriver} that start with "mock".
+ */
+public final class MockGuardianServer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Number of results the guardian has for a search when none are recorded
+     */
+    public static final int DEFAULT_TOTAL_RESULTS = 25318;
+
+    /**
+     * Page size of the guardian if a request does not ask for one, and the largest it allows
+     */
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+    private static final int DAYS_PER_YEAR = 366;
+
+    /**
+     * Time in which a throttled body sends the bytes of one second divided by this
+     */
+    private static final int THROTTLE_SLICES_PER_SECOND = 10;
+
+    /**
+     * Error statuses that are injected, in turn
+     */
+    private static final int[] INJECTED_ERRORS = {429, 500, 503};
+
+    /**
+     * Status code of a response to a conditional request for an unchanged page
+     */
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+
+    /* Results of recorded responses, null to generate them */
+    private final List<String> mRecordedResults;
+
+    private volatile long mLatencyMillis;
+    private volatile long mBytesPerSecond;
+    private volatile double mErrorRate;
+    private volatile int mTotalResults;
+
+    /* Time the results last changed, in whole seconds like the HTTP dates */
+    private final long mLastModifiedMillis = System.currentTimeMillis() / 1000 * 1000;
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mErrorCount = new AtomicLong();
+    private final AtomicLong mNotModifiedCount = new AtomicLong();
+
+    /**
+     * Constructs a new {@link MockGuardianServer} that is not started yet.
+     *
+     * @param port            to listen on, 0 for any free port
+     * @param threads         is the number of requests that are answered at the same time
+     * @param recordedResults are the results to replay, null to generate them
+     */
+    public MockGuardianServer(int port, int threads, List<String> recordedResults)
+            throws IOException {
+        mRecordedResults = recordedResults;
+        mTotalResults = recordedResults != null ? recordedResults.size() : DEFAULT_TOTAL_RESULTS;
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    search(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mExecutor = Executors.newFixedThreadPool(threads);
+        mServer.setExecutor(mExecutor);
+    }
+
+    /**
+     * Return the results of all recorded search responses, the files with the ending .json in
+     * the given directory, in the order of their names.
+     */
+    public static List<String> loadRecordedResults(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("No directory " + directory);
+        }
+        Arrays.sort(files);
+
+        ArrayList<String> results = new ArrayList<>();
+        for (File file : files) {
+            if (!file.getName().endsWith(".json")) {
+                continue;
+            }
+            try {
+                String json = new String(Files.readAllBytes(file.toPath()), UTF_8);
+                JSONArray resultArray = new JSONObject(json).getJSONObject("response")
+                        .getJSONArray("results");
+                for (int i = 0; i < resultArray.length(); i++) {
+                    results.add(resultArray.getJSONObject(i).toString());
+                }
+            } catch (JSONException e) {
+                throw new IOException("No search response in " + file, e);
+            }
+        }
+        if (results.isEmpty()) {
+            throw new IOException("No recorded results in " + directory);
+        }
+        return results;
+    }
+
+    public void start() {
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Return the URL of the search of this server.
+     */
+    public String getSearchUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/search";
+    }
+
+    /**
+     * Delay every response by the given time before its headers are sent.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        mLatencyMillis = latencyMillis;
+    }
+
+    /**
+     * Send the bodies with at most the given number of bytes per second, 0 for no limit.
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Fail the given share of the requests, from 0 to 1.
+     */
+    public void setErrorRate(double errorRate) {
+        mErrorRate = errorRate;
+    }
+
+    /**
+     * Set the number of results of every search. Recorded results repeat to fill them.
+     */
+    public void setTotalResults(int totalResults) {
+        mTotalResults = totalResults;
+    }
+
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public long getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    public long getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        long requestNumber = mRequestCount.incrementAndGet();
+        sleep(mLatencyMillis);
+
+        if (ThreadLocalRandom.current().nextDouble() < mErrorRate) {
+            mErrorCount.incrementAndGet();
+            int status = INJECTED_ERRORS[(int) (requestNumber % INJECTED_ERRORS.length)];
+            if (status != 500) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+            send(exchange, status, "{\"response\":{\"status\":\"error\","
+                    + "\"message\":\"Injected error\"}}");
+            return;
+        }
+
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        int page = intParameter(parameters, "page", 1);
+        int pageSize = intParameter(parameters, "page-size", DEFAULT_PAGE_SIZE);
+        int total = mTotalResults;
+        int pages = Math.max(1, (total + pageSize - 1) / pageSize);
+        if (page < 1 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            send(exchange, 400, "{\"response\":{\"status\":\"error\","
+                    + "\"message\":\"Invalid page or page-size\"}}");
+            return;
+        }
+        if (page > pages) {
+            send(exchange, 400, "{\"response\":{\"status\":\"error\","
+                    + "\"message\":\"requested page is beyond the number of available pages\"}}");
+            return;
+        }
+
+        // Generated results are only of the given section, and differ by the first day
+        int first = 0;
+        int stride = 1;
+        if (mRecordedResults == null) {
+            String section = parameters.get("section");
+            if (section != null) {
+                first = GuardianPayloads.sectionIndex(section);
+                stride = GuardianPayloads.sectionCount();
+                if (first < 0) {
+                    send(exchange, 400, "{\"response\":{\"status\":\"error\","
+                            + "\"message\":\"Invalid section\"}}");
+                    return;
+                }
+            }
+            long fromDate = StoryDateCodec.parseStartOfDay(parameters.get("from-date"));
+            if (fromDate != StoryDateCodec.NO_DATE) {
+                first += (int) (fromDate / MILLIS_PER_DAY % DAYS_PER_YEAR) * total * stride;
+            }
+        }
+
+        int start = (page - 1) * pageSize;
+        int results = Math.min(pageSize, total - start);
+        StringBuilder builder = new StringBuilder(results * 1600 + 256);
+        builder.append("{\"response\":{\"status\":\"ok\",\"userTier\":\"developer\",")
+                .append("\"total\":").append(total)
+                .append(",\"startIndex\":").append(start + 1)
+                .append(",\"pageSize\":").append(pageSize)
+                .append(",\"currentPage\":").append(page)
+                .append(",\"pages\":").append(pages)
+                .append(",\"orderBy\":\"newest\",\"results\":[");
+        for (int i = 0; i < results; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(result(first + (start + i) * stride));
+        }
+        builder.append("]}}");
+        String body = builder.toString();
+
+        // Validators of the page, an unchanged page is not sent again
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(UTF_8));
+        String eTag = "\"" + Long.toHexString(crc.getValue()) + "-" + body.length() + "\"";
+        String lastModified = httpDate().format(new Date(mLastModifiedMillis));
+        exchange.getResponseHeaders().set("ETag", eTag);
+        exchange.getResponseHeaders().set("Last-Modified", lastModified);
+        if (isNotModified(exchange, eTag)) {
+            mNotModifiedCount.incrementAndGet();
+            exchange.sendResponseHeaders(HTTP_NOT_MODIFIED, -1);
+            return;
+        }
+        send(exchange, 200, body);
+    }
+
+    /**
+     * Return true if the conditional headers of the request say that the client holds the
+     * page with the given ETag. If-Modified-Since only counts without If-None-Match.
+     */
+    private boolean isNotModified(HttpExchange exchange, String eTag) {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.equals("*") || candidate.equals(eTag)
+                        || candidate.equals("W/" + eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince == null) {
+            return false;
+        }
+        try {
+            return httpDate().parse(ifModifiedSince).getTime() >= mLastModifiedMillis;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Return a new format of HTTP dates, which are in GMT.
+     */
+    private static SimpleDateFormat httpDate() {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+
+    private String result(int index) {
+        if (mRecordedResults == null) {
+            return GuardianPayloads.result(index);
+        }
+        return mRecordedResults.get(index % mRecordedResults.size());
+    }
+
+    /**
+     * Send the given body, gzip compressed if the client accepts it, and throttled to the
+     * bandwidth of the server.
+     */
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.toLowerCase(Locale.US).contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(bytes);
+            gzip.close();
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        // Drain the request, a GET has no body but the connection is reused
+        InputStream requestBody = exchange.getRequestBody();
+        while (requestBody.read() != -1) {
+            // Nothing to do
+        }
+
+        OutputStream output = exchange.getResponseBody();
+        long bytesPerSecond = mBytesPerSecond;
+        if (bytesPerSecond <= 0) {
+            output.write(bytes);
+        } else {
+            int slice = (int) Math.max(1, bytesPerSecond / THROTTLE_SLICES_PER_SECOND);
+            for (int offset = 0; offset < bytes.length; offset += slice) {
+                output.write(bytes, offset, Math.min(slice, bytes.length - offset));
+                output.flush();
+                sleep(1000 / THROTTLE_SLICES_PER_SECOND);
+            }
+        }
+        output.close();
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        HashMap<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            try {
+                parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                // Every Java platform has to support UTF-8
+                throw new IllegalStateException(e);
+            }
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Run the server until the process is killed.
+     */
+    public static void main(String[] args) throws IOException {
+        LoadTestDriver.Options options = LoadTestDriver.Options.parse(args);
+        MockGuardianServer server = options.startServer();
+        System.out.println("Mock guardian search at " + server.getSearchUrl());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of reading and parsing a guardian search response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int results;
+
+    private byte[] mBytes;
+    private String mJson;
+
+    @Setup
+    public void setUp() {
+        mBytes = GuardianPayloads.bytes(results);
+        mJson = GuardianPayloads.json(results);
+        QueryUtils.setTransport(new RecordedTransport(mBytes));
+    }
+
+    @Benchmark
+    public String readFromStream() throws IOException {
+        return QueryUtils.readFromStream(new ByteArrayInputStream(mBytes));
+    }
+
+    @Benchmark
+    public StoryPage extractStoryFeatureFromJson() {
+        return QueryUtils.extractStoryFeatureFromJson(mJson);
+    }
+
+    @Benchmark
+    public StoryPage streamingParse() throws IOException {
+        return StoryStreamParser.parse(new ByteArrayInputStream(mBytes), null);
+    }
+
+    @Benchmark
+    public List<Story> fetchStoryDataStreaming() {
+        QueryUtils.setStreamingParserEnabled(true);
+        return QueryUtils.fetchStoryData("https://content.guardianapis.com/search");
+    }
+
+    @Benchmark
+    public List<Story> fetchStoryDataLegacy() {
+        QueryUtils.setStreamingParserEnabled(false);
+        return QueryUtils.fetchStoryData("https://content.guardianapis.com/search");
+    }
+}
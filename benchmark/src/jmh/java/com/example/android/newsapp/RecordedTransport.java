@@ -0,0 +1,42 @@
+package com.example.android.newsapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * {@link HttpTransport} that answers every request with the same recorded response body,
+ * so the fetch pipeline can be measured without a network.
+ */
+final class RecordedTransport implements HttpTransport {
+
+    private final byte[] mBody;
+
+    RecordedTransport(byte[] body) {
+        mBody = body;
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers, CancellationToken token) {
+        return new Response() {
+            @Override
+            public int getCode() {
+                return 200;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return null;
+            }
+
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(mBody);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of restoring a page of stories from a {@link StorySnapshot} against parsing the
+ * guardian JSON again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int results;
+
+    private byte[] mJsonBytes;
+    private StoryPage mStoryPage;
+    private byte[] mSnapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        mJsonBytes = GuardianPayloads.bytes(results);
+        mStoryPage = StoryStreamParser.parse(new ByteArrayInputStream(mJsonBytes), null);
+        mSnapshot = StorySnapshot.write(mStoryPage);
+    }
+
+    @Benchmark
+    public byte[] writeSnapshot() {
+        return StorySnapshot.write(mStoryPage);
+    }
+
+    @Benchmark
+    public StoryPage readSnapshot() throws IOException {
+        return StorySnapshot.read(mSnapshot);
+    }
+
+    /* Decodes only the last story, the others are skipped through the offset table */
+    @Benchmark
+    public Story readSnapshotStory() throws IOException {
+        StorySnapshot.Reader reader = new StorySnapshot.Reader(mSnapshot);
+        return reader.getStory(reader.getStoryCount() - 1);
+    }
+
+    @Benchmark
+    public StoryPage reparseJson() throws IOException {
+        return StoryStreamParser.parse(new ByteArrayInputStream(mJsonBytes), null);
+    }
+}
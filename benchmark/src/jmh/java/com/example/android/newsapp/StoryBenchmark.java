@@ -0,0 +1,66 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the work done to get the stories ready for the story list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StoryBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int results;
+
+    private List<Story> mStories;
+    private String[] mPublicationDates;
+
+    @Setup
+    public void setUp() {
+        mStories = QueryUtils.extractStoryFeatureFromJson(GuardianPayloads.json(results)).getStories();
+        mPublicationDates = new String[mStories.size()];
+        for (int i = 0; i < mPublicationDates.length; i++) {
+            mPublicationDates[i] = String.format("2017-07-%02dT%02d:%02d:00Z", i % 28 + 1, i % 24, i % 60);
+        }
+    }
+
+    @Benchmark
+    public void getAuthorsAsString(Blackhole blackhole) {
+        for (Story story : mStories) {
+            blackhole.consume(story.getAuthorsAsString());
+        }
+    }
+
+    @Benchmark
+    public void parsePublicationDate(Blackhole blackhole) {
+        for (String publicationDate : mPublicationDates) {
+            blackhole.consume(StoryDateCodec.parsePublicationDate(publicationDate));
+        }
+    }
+
+    /* Work done once for every story, when its row is built */
+    @Benchmark
+    public void formatDate(Blackhole blackhole) {
+        for (Story story : mStories) {
+            blackhole.consume(StoryDateCodec.formatDisplayDate(story.getTimeInMillis()));
+        }
+    }
+
+    /* Work done on the loader thread for every delivered page */
+    @Benchmark
+    public void buildRows(Blackhole blackhole) {
+        blackhole.consume(StoryRow.fromStories(mStories));
+    }
+}
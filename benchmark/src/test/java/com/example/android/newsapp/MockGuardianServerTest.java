@@ -0,0 +1,108 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the conditional requests and the compression of {@link QueryUtils} against the
+ * {@link MockGuardianServer}.
+ */
+public class MockGuardianServerTest {
+
+    private static final int TOTAL_RESULTS = 40;
+
+    private MockGuardianServer mServer;
+    private String mUrl;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new MockGuardianServer(0, 2, null);
+        mServer.setTotalResults(TOTAL_RESULTS);
+        mServer.start();
+        mUrl = mServer.getSearchUrl() + "?section=politics&page-size=20";
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void unchangedPageIsReusedWithoutItsBody() {
+        long start = QueryUtils.getBytesReceived();
+        StoryPage page = QueryUtils.fetchStoryPage(mUrl, new CancellationToken());
+        long pageBytes = QueryUtils.getBytesReceived() - start;
+        assertNotNull(page);
+        assertEquals(20, page.getStories().size());
+        assertNotNull(page.getETag());
+        assertNotNull(page.getLastModified());
+
+        start = QueryUtils.getBytesReceived();
+        StoryPage revalidated = QueryUtils.fetchStoryPage(mUrl, page, null,
+                new CancellationToken());
+        long revalidatedBytes = QueryUtils.getBytesReceived() - start;
+
+        assertSame(page, revalidated);
+        assertEquals(1, mServer.getNotModifiedCount());
+        assertTrue(revalidatedBytes + " of " + pageBytes, revalidatedBytes < pageBytes);
+    }
+
+    @Test
+    public void pageUnmodifiedSinceItsDateIsReused() {
+        StoryPage page = QueryUtils.fetchStoryPage(mUrl, new CancellationToken());
+        assertNotNull(page);
+        StoryPage dated = new StoryPage(page.getStories(), page.getCurrentPage(),
+                page.getPages(), null, page.getLastModified());
+
+        assertSame(dated, QueryUtils.fetchStoryPage(mUrl, dated, null, new CancellationToken()));
+        assertEquals(1, mServer.getNotModifiedCount());
+    }
+
+    @Test
+    public void changedPageIsSentAgain() {
+        StoryPage page = QueryUtils.fetchStoryPage(mUrl, new CancellationToken());
+        assertNotNull(page);
+        StoryPage stale = new StoryPage(page.getStories(), page.getCurrentPage(),
+                page.getPages(), "\"stale\"", page.getLastModified());
+
+        StoryPage fetched = QueryUtils.fetchStoryPage(mUrl, stale, null, new CancellationToken());
+
+        assertNotNull(fetched);
+        assertTrue(fetched != stale);
+        assertEquals(page.getETag(), fetched.getETag());
+        assertEquals(0, mServer.getNotModifiedCount());
+    }
+
+    @Test
+    public void bodyIsCompressed() throws IOException {
+        long start = QueryUtils.getBytesReceived();
+        assertNotNull(QueryUtils.fetchStoryPage(mUrl, new CancellationToken()));
+        long compressedBytes = QueryUtils.getBytesReceived() - start;
+
+        // The same page without compression
+        HttpURLConnection connection = (HttpURLConnection) new URL(mUrl).openConnection();
+        long plainBytes = 0;
+        try {
+            InputStream body = connection.getInputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = body.read(buffer)) != -1; ) {
+                plainBytes += read;
+            }
+        } finally {
+            connection.disconnect();
+        }
+
+        assertTrue(compressedBytes + " of " + plainBytes, compressedBytes * 2 < plainBytes);
+    }
+}
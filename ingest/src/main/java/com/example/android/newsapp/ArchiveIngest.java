@@ -0,0 +1,485 @@
+package com.example.android.newsapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command line tool that ingests the guardian archive of a date range into an
+ * {@link ArchiveStore}.
+ * <p>
+ * The range is split into windows of a few days, and every window of every section is a query
+ * that is paged through with {@link QueryUtils#fetchStoryPage}. All pages of all queries are
+ * fetched and parsed at the same time by a fixed number of workers, over the
+ * {@link ResilientTransport} with a request budget of the given rate. The first page of a query
+ * tells how many pages it has, so the workers add the others once it is stored.
+ * <p>
+ * A run that is interrupted, or that failed on some pages, resumes where it stopped when it is
+ * started again with the same output directory: the pages in the checkpoint of the store are
+ * not fetched again. At the end the number of pages and stories and the stories per second are
+ * printed.
+ * <p>
+ * Run with {@code ./gradlew :ingest:ingestArchive
+ * -PingestArgs="sections=politics,world from=2017-01-01 to=2017-06-30 out=archive"}. The
+ * arguments are name=value pairs, see {@link Options}.
+ */
+public final class ArchiveIngest {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ArchiveIngest.class.getSimpleName();
+
+    /**
+     * URL of the guardian search
+     */
+    public static final String GUARDIAN_SEARCH_URL = "https://content.guardianapis.com/search";
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    /**
+     * Longest time a request waits for the request budget. The workers share the budget, so a
+     * request waits for at most one request of every other worker.
+     */
+    private static final long MAX_BUDGET_WAIT_MILLIS = 60000;
+
+    /**
+     * Number of times a page is requested before it counts as failed. The transport retries
+     * every request by itself, but it fails fast while the guardian keeps failing, and a long
+     * run should rather wait for it.
+     */
+    private static final int MAX_PAGE_ATTEMPTS = 3;
+
+    /**
+     * Time between two looks at the transport while the guardian is failing
+     */
+    private static final long UPSTREAM_POLL_MILLIS = 1000;
+
+    /**
+     * Number of pages registered with one child of the phaser. A phaser has at most 65535
+     * parties, and every child is one party of the phaser of the run.
+     */
+    private static final int PAGES_PER_PHASER = 10000;
+
+    /**
+     * Largest number of stories of a page the guardian returns
+     */
+    static final int MAX_PAGE_SIZE = 200;
+
+    private final Options mOptions;
+    private final ArchiveStore mStore;
+    private final CancellationToken mToken;
+    private final ExecutorService mExecutor;
+
+    /* Registers every page that is queued or being fetched, so the run knows when it is done */
+    private final Phaser mPhaser = new Phaser(1);
+
+    /* Child of the phaser the next pages are registered with and its number of pages so far,
+     * guarded by this */
+    private Phaser mPagePhaser;
+    private int mPagePhaserPages;
+
+    private final AtomicLong mPagesFetched = new AtomicLong();
+    private final AtomicLong mPagesSkipped = new AtomicLong();
+    private final AtomicLong mPagesFailed = new AtomicLong();
+    private final AtomicLong mStoriesParsed = new AtomicLong();
+    private final AtomicLong mStoriesNew = new AtomicLong();
+
+    /**
+     * Constructs a new {@link ArchiveIngest} that has not started yet.
+     *
+     * @param options of the run
+     * @param store   to add the stories to
+     * @param token   stops the run once it is cancelled
+     */
+    public ArchiveIngest(Options options, ArchiveStore store, CancellationToken token) {
+        mOptions = options;
+        mStore = store;
+        mToken = token;
+        mExecutor = Executors.newFixedThreadPool(options.mThreads);
+    }
+
+    /**
+     * Fetch all pages of all queries that are not in the store yet and return the report of
+     * the run once they are stored, have failed or the run has been cancelled.
+     */
+    public Report run() throws InterruptedException {
+        long startNanos = System.nanoTime();
+        try {
+            for (String[] window : windows(mOptions.mFrom, mOptions.mTo, mOptions.mWindowDays)) {
+                for (String section : mOptions.mSections) {
+                    startQuery(section, window[0], window[1]);
+                }
+            }
+            mPhaser.arriveAndAwaitAdvance();
+        } finally {
+            mExecutor.shutdownNow();
+            mExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return new Report(mPagesFetched.get(), mPagesSkipped.get(), mPagesFailed.get(),
+                mStoriesParsed.get(), mStoriesNew.get(), mStore.getStoryCount(),
+                System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Queue the pages of the query of the given section and window that are not stored yet.
+     */
+    private void startQuery(String section, String from, String to) {
+        String query = (section.isEmpty() ? "*" : section) + '/' + from + '/' + to;
+        StringBuilder url = new StringBuilder(mOptions.mEndpoint)
+                .append("?api-key=").append(encode(mOptions.mApiKey))
+                .append("&show-fields=").append(QueryUtils.SHOW_FIELDS)
+                .append("&show-tags=").append(QueryUtils.SHOW_TAGS);
+        if (!section.isEmpty()) {
+            url.append("&section=").append(encode(section));
+        }
+        // The oldest stories first, so new stories do not move the others to later pages
+        url.append("&from-date=").append(from)
+                .append("&to-date=").append(to)
+                .append("&order-by=oldest&page-size=").append(mOptions.mPageSize);
+
+        int pages = mStore.getPages(query);
+        if (pages == 0) {
+            queuePage(query, url.toString(), 1, true);
+        } else {
+            for (int page = 1; page <= pages; page++) {
+                queuePage(query, url.toString(), page, false);
+            }
+        }
+    }
+
+    /**
+     * Queue the given page of a query unless it is stored. If the other pages are queued, the
+     * pages after the first are queued once it is stored.
+     */
+    private void queuePage(final String query, final String queryUrl, final int page,
+                           final boolean queueOtherPages) {
+        if (mStore.isStored(query, page)) {
+            mPagesSkipped.incrementAndGet();
+            return;
+        }
+
+        final Phaser phaser = registerPage();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fetchPage(query, queryUrl, page, queueOtherPages);
+                } finally {
+                    phaser.arriveAndDeregister();
+                }
+            }
+        });
+    }
+
+    /**
+     * Register a page with a child of the phaser of the run and return the child.
+     */
+    private synchronized Phaser registerPage() {
+        if (mPagePhaser == null || mPagePhaserPages == PAGES_PER_PHASER) {
+            mPagePhaser = new Phaser(mPhaser);
+            mPagePhaserPages = 0;
+        }
+        mPagePhaserPages++;
+        mPagePhaser.register();
+        return mPagePhaser;
+    }
+
+    private void fetchPage(String query, String queryUrl, int page, boolean queueOtherPages) {
+        if (mToken.isCanceled()) {
+            return;
+        }
+
+        StoryPage storyPage = null;
+        for (int attempt = 1; attempt <= MAX_PAGE_ATTEMPTS && !mToken.isCanceled(); attempt++) {
+            storyPage = QueryUtils.fetchStoryPage(queryUrl + "&page=" + page, mToken);
+            if (storyPage != null || attempt == MAX_PAGE_ATTEMPTS || !awaitUpstream()) {
+                break;
+            }
+        }
+        if (storyPage == null) {
+            if (!mToken.isCanceled()) {
+                mPagesFailed.incrementAndGet();
+                IngestLog.e(LOG_TAG, "Problem fetching page " + page + " of " + query);
+            }
+            return;
+        }
+        mPagesFetched.incrementAndGet();
+        mStoriesParsed.addAndGet(storyPage.getStories().size());
+
+        try {
+            mStoriesNew.addAndGet(mStore.putPage(query, page, storyPage));
+        } catch (IOException e) {
+            mPagesFailed.incrementAndGet();
+            IngestLog.e(LOG_TAG, "Problem storing page " + page + " of " + query, e);
+            return;
+        }
+
+        if (queueOtherPages) {
+            for (int otherPage = page + 1; otherPage <= storyPage.getPages(); otherPage++) {
+                queuePage(query, queryUrl, otherPage, false);
+            }
+        }
+    }
+
+    /**
+     * Wait until the transport lets requests to the guardian through again after it gave up on
+     * one, and return false if the run has been cancelled in the meantime.
+     */
+    private boolean awaitUpstream() {
+        try {
+            do {
+                mToken.sleep(UPSTREAM_POLL_MILLIS);
+            } while (QueryUtils.isUpstreamFailing());
+            return true;
+        } catch (InterruptedIOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Return the windows of at most the given number of days, as pairs of query dates, that
+     * cover the days from the first to the last given query date.
+     */
+    static List<String[]> windows(String from, String to, int windowDays) {
+        long first = StoryDateCodec.parseStartOfDay(from);
+        long last = StoryDateCodec.parseStartOfDay(to);
+        if (first == StoryDateCodec.NO_DATE || last == StoryDateCodec.NO_DATE) {
+            throw new IllegalArgumentException("Not a date range: " + from + " to " + to);
+        }
+
+        ArrayList<String[]> windows = new ArrayList<>();
+        for (long start = first; start <= last; start += windowDays * MILLIS_PER_DAY) {
+            long end = Math.min(start + (windowDays - 1) * MILLIS_PER_DAY, last);
+            windows.add(new String[]{StoryDateCodec.formatQueryDate(start),
+                    StoryDateCodec.formatQueryDate(end)});
+        }
+        return windows;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // Every Java platform has to support UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Install the transport of an ingestion with the given number of requests per second, or
+     * none if it is 0 or less.
+     */
+    public static void setTransport(double requestsPerSecond) {
+        int budgetRequests = Integer.MAX_VALUE;
+        long budgetRefillMillis = 1;
+        long maxBudgetWaitMillis = 0;
+        if (requestsPerSecond > 0) {
+            budgetRequests = (int) Math.max(1, requestsPerSecond);
+            budgetRefillMillis = (long) Math.max(1, 1000 / requestsPerSecond);
+            maxBudgetWaitMillis = MAX_BUDGET_WAIT_MILLIS;
+        }
+        QueryUtils.setTransport(new ResilientTransport(new OkHttpTransport(),
+                ResilientTransport.SYSTEM_CLOCK, new Random(),
+                ResilientTransport.DEFAULT_MAX_ATTEMPTS,
+                ResilientTransport.DEFAULT_BASE_BACKOFF_MILLIS,
+                ResilientTransport.DEFAULT_MAX_BACKOFF_MILLIS,
+                ResilientTransport.DEFAULT_FAILURE_THRESHOLD,
+                ResilientTransport.DEFAULT_OPEN_MILLIS, budgetRequests, budgetRefillMillis,
+                maxBudgetWaitMillis));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        setTransport(options.mRequestsPerSecond);
+
+        final ArchiveStore store = ArchiveStore.open(new File(options.mOut));
+        final CancellationToken token = new CancellationToken();
+        final Thread mainThread = Thread.currentThread();
+
+        // Stop the workers on Ctrl-C and wait for the pages they are storing
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                token.cancel();
+                try {
+                    mainThread.join(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    // Exit anyway
+                }
+            }
+        });
+
+        try {
+            Report report = new ArchiveIngest(options, store, token).run();
+            System.out.println(String.format(Locale.US, "Ingested %s from %s to %s into %s",
+                    options.mSections.contains("") ? "all sections" : options.mSections,
+                    options.mFrom, options.mTo, options.mOut));
+            System.out.println(report);
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Options of an ingestion, given as name=value arguments:
+     * <ul>
+     * <li>sections is a comma separated list of section ids, all sections if it is empty</li>
+     * <li>from and to are the first and the last day as query dates like 2017-07-03</li>
+     * <li>window is the number of days of one query</li>
+     * <li>out is the directory of the {@link ArchiveStore}</li>
+     * <li>threads is the number of pages that are fetched and parsed at the same time</li>
+     * <li>pageSize is the number of stories of a page, at most 200</li>
+     * <li>rate is the number of requests per second, 0 for no limit</li>
+     * <li>url is the guardian search and apiKey the key of the requests</li>
+     * </ul>
+     */
+    public static final class Options {
+
+        List<String> mSections = Collections.singletonList("");
+        String mFrom;
+        String mTo;
+        int mWindowDays = 7;
+        String mOut = "archive";
+        int mThreads = Runtime.getRuntime().availableProcessors() * 2;
+        int mPageSize = MAX_PAGE_SIZE;
+        double mRequestsPerSecond = ResilientTransport.DEFAULT_BUDGET_REQUESTS;
+        String mEndpoint = GUARDIAN_SEARCH_URL;
+        String mApiKey = "test";
+
+        public static Options parse(String[] args) {
+            HashMap<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Not a name=value argument: " + arg);
+                }
+                values.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+
+            Options options = new Options();
+            String sections = values.remove("sections");
+            if (sections != null && !sections.isEmpty()) {
+                options.mSections = Arrays.asList(sections.split(","));
+            }
+            options.mFrom = values.remove("from");
+            options.mTo = values.remove("to");
+            if (options.mFrom == null || options.mTo == null) {
+                throw new IllegalArgumentException("The from and to dates are missing");
+            }
+            options.mWindowDays = intValue(values, "window", options.mWindowDays);
+            String out = values.remove("out");
+            if (out != null) {
+                options.mOut = out;
+            }
+            options.mThreads = intValue(values, "threads", options.mThreads);
+            options.mPageSize = intValue(values, "pageSize", options.mPageSize);
+            String rate = values.remove("rate");
+            if (rate != null) {
+                options.mRequestsPerSecond = Double.parseDouble(rate);
+            }
+            String url = values.remove("url");
+            if (url != null) {
+                options.mEndpoint = url;
+            }
+            String apiKey = values.remove("apiKey");
+            if (apiKey != null) {
+                options.mApiKey = apiKey;
+            }
+            if (!values.isEmpty()) {
+                throw new IllegalArgumentException("Unknown arguments " + values.keySet());
+            }
+            if (options.mWindowDays < 1 || options.mThreads < 1 || options.mPageSize < 1) {
+                throw new IllegalArgumentException(
+                        "The window, threads and pageSize must be positive");
+            }
+            if (options.mPageSize > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("The pageSize must be at most " + MAX_PAGE_SIZE);
+            }
+            return options;
+        }
+
+        private static int intValue(HashMap<String, String> values, String name,
+                                    int defaultValue) {
+            String value = values.remove(name);
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        }
+    }
+
+    /**
+     * Numbers of a finished run.
+     */
+    public static final class Report {
+
+        private final long mPagesFetched;
+        private final long mPagesSkipped;
+        private final long mPagesFailed;
+        private final long mStoriesParsed;
+        private final long mStoriesNew;
+        private final long mStoriesStored;
+        private final long mElapsedNanos;
+
+        Report(long pagesFetched, long pagesSkipped, long pagesFailed, long storiesParsed,
+               long storiesNew, long storiesStored, long elapsedNanos) {
+            mPagesFetched = pagesFetched;
+            mPagesSkipped = pagesSkipped;
+            mPagesFailed = pagesFailed;
+            mStoriesParsed = storiesParsed;
+            mStoriesNew = storiesNew;
+            mStoriesStored = storiesStored;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        public long getPagesFetched() {
+            return mPagesFetched;
+        }
+
+        public long getPagesSkipped() {
+            return mPagesSkipped;
+        }
+
+        public long getPagesFailed() {
+            return mPagesFailed;
+        }
+
+        public long getStoriesParsed() {
+            return mStoriesParsed;
+        }
+
+        public long getStoriesNew() {
+            return mStoriesNew;
+        }
+
+        /**
+         * Return the number of stories parsed per second.
+         */
+        public double getStoriesPerSecond() {
+            return mElapsedNanos > 0 ? mStoriesParsed / (mElapsedNanos / 1e9) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "pages fetched %d, skipped %d, failed %d%n"
+                            + "stories parsed %d, new %d, duplicate %d, stored %d%n"
+                            + "%.2f s, %.1f stories/s",
+                    mPagesFetched, mPagesSkipped, mPagesFailed,
+                    mStoriesParsed, mStoriesNew, mStoriesParsed - mStoriesNew, mStoriesStored,
+                    mElapsedNanos / 1e9, getStoriesPerSecond());
+        }
+    }
+}
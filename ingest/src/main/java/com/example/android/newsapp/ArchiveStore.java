@@ -0,0 +1,265 @@
+package com.example.android.newsapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Directory of the stories of an archive ingestion, without duplicates, together with the
+ * checkpoint of the pages that have been stored.
+ * <p>
+ * Every stored page becomes a {@link StorySnapshot} file with the stories no page before it
+ * had. Then the page is appended to the checkpoint, a text file with one line per page that
+ * also keeps the number of pages of its query. A snapshot is synced to the disk and renamed
+ * into place once it is complete, and a page is only in the checkpoint once its snapshot is, so
+ * an interrupted run, or a crash of the system, loses at most the pages that were in flight.
+ * They are fetched again on the next run and their stories that made it into a snapshot are
+ * dropped as duplicates. A page that has stories another page is writing at the same time
+ * leaves them to that page, and only goes into the checkpoint once they are stored.
+ * <p>
+ * All methods are thread safe.
+ */
+public final class ArchiveStore {
+
+    /**
+     * Name of the checkpoint file
+     */
+    private static final String CHECKPOINT_FILE = "checkpoint.txt";
+
+    /**
+     * Prefix and suffix of the snapshot files, with the number of the snapshot in between
+     */
+    private static final String SNAPSHOT_PREFIX = "stories-";
+    private static final String SNAPSHOT_SUFFIX = ".snp";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+
+    /* Write of the snapshot with the story, by the web URL of the story */
+    private final ConcurrentHashMap<String, SnapshotWrite> mStoryUrls = new ConcurrentHashMap<>();
+
+    /* Number of the next snapshot file */
+    private final AtomicInteger mNextSnapshot;
+
+    /* Number of pages of a query and its stored pages, by query, guarded by this */
+    private final HashMap<String, Integer> mPages = new HashMap<>();
+    private final HashSet<String> mStoredPages = new HashSet<>();
+    private final FileOutputStream mCheckpointOutput;
+    private final Writer mCheckpoint;
+
+    private ArchiveStore(File directory, int nextSnapshot, FileOutputStream checkpointOutput) {
+        mDirectory = directory;
+        mNextSnapshot = new AtomicInteger(nextSnapshot);
+        mCheckpointOutput = checkpointOutput;
+        mCheckpoint = new OutputStreamWriter(checkpointOutput, UTF_8);
+    }
+
+    /**
+     * Open the store in the given directory, with the stories and the checkpoint of the runs
+     * before, or create an empty one.
+     */
+    public static ArchiveStore open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Problem creating " + directory);
+        }
+
+        // Remember the stories of all snapshots, parts of an interrupted run are dropped
+        File[] files = directory.listFiles();
+        int nextSnapshot = 0;
+        ArrayList<File> snapshots = new ArrayList<>();
+        for (File file : files != null ? files : new File[0]) {
+            String name = file.getName();
+            if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                snapshots.add(file);
+                int number = Integer.parseInt(name.substring(SNAPSHOT_PREFIX.length(),
+                        name.length() - SNAPSHOT_SUFFIX.length()));
+                nextSnapshot = Math.max(nextSnapshot, number + 1);
+            } else if (name.endsWith(".tmp") && !file.delete()) {
+                throw new IOException("Problem deleting " + file);
+            }
+        }
+
+        // Only whole lines count, a line cut off by the interruption is removed, so the lines
+        // of this run are not appended to it
+        File checkpointFile = new File(directory, CHECKPOINT_FILE);
+        String[] lines = new String[0];
+        if (checkpointFile.exists()) {
+            byte[] checkpoint = Files.readAllBytes(checkpointFile.toPath());
+            int length = checkpoint.length;
+            while (length > 0 && checkpoint[length - 1] != '\n') {
+                length--;
+            }
+            if (length < checkpoint.length) {
+                RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw");
+                try {
+                    file.setLength(length);
+                } finally {
+                    file.close();
+                }
+            }
+            if (length > 0) {
+                lines = new String(checkpoint, 0, length - 1, UTF_8).split("\n");
+            }
+        }
+
+        ArchiveStore store = new ArchiveStore(directory, nextSnapshot,
+                new FileOutputStream(checkpointFile, true));
+        SnapshotWrite stored = new SnapshotWrite();
+        stored.finish(true);
+        for (File snapshot : snapshots) {
+            StorySnapshot.Reader reader =
+                    new StorySnapshot.Reader(Files.readAllBytes(snapshot.toPath()));
+            for (int i = 0; i < reader.getStoryCount(); i++) {
+                store.mStoryUrls.put(reader.getStory(i).getUrl(), stored);
+            }
+        }
+        for (String line : lines) {
+            String[] fields = line.split("\t");
+            if (fields.length == 3) {
+                store.mPages.put(fields[0], Integer.parseInt(fields[2]));
+                store.mStoredPages.add(fields[0] + '\t' + fields[1]);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Return true if the given page of the given query has been stored.
+     */
+    public synchronized boolean isStored(String query, int page) {
+        return mStoredPages.contains(query + '\t' + page);
+    }
+
+    /**
+     * Return the number of pages of the given query, or 0 if no page of it has been stored.
+     */
+    public synchronized int getPages(String query) {
+        Integer pages = mPages.get(query);
+        return pages != null ? pages : 0;
+    }
+
+    /**
+     * Return the number of stored stories.
+     */
+    public int getStoryCount() {
+        return mStoryUrls.size();
+    }
+
+    /**
+     * Store the stories of the given page of the given query that are not stored yet and
+     * return their number. The page is the one that was requested, the guardian may number the
+     * page it returns differently.
+     */
+    public int putPage(String query, int page, StoryPage storyPage) throws IOException {
+        // Take the stories no other page has taken
+        SnapshotWrite write = new SnapshotWrite();
+        List<Story> newStories = new ArrayList<>();
+        HashSet<SnapshotWrite> otherWrites = new HashSet<>();
+        for (Story story : storyPage.getStories()) {
+            SnapshotWrite previous = mStoryUrls.putIfAbsent(story.getUrl(), write);
+            if (previous == null) {
+                newStories.add(story);
+            } else if (previous != write) {
+                otherWrites.add(previous);
+            }
+        }
+
+        boolean stored = false;
+        try {
+            if (!newStories.isEmpty()) {
+                writeSnapshot(new StoryPage(newStories, page, storyPage.getPages()));
+            }
+            stored = true;
+        } finally {
+            if (!stored) {
+                // The stories are not stored, so another page may take them
+                for (Story story : newStories) {
+                    mStoryUrls.remove(story.getUrl(), write);
+                }
+            }
+            write.finish(stored);
+        }
+
+        // The page is only stored once the stories that other pages took are stored as well
+        for (SnapshotWrite otherWrite : otherWrites) {
+            if (!otherWrite.await()) {
+                throw new IOException("Problem storing the stories of another page");
+            }
+        }
+
+        synchronized (this) {
+            mCheckpoint.write(query + '\t' + page + '\t' + storyPage.getPages() + '\n');
+            mCheckpoint.flush();
+            mCheckpointOutput.getFD().sync();
+            mPages.put(query, storyPage.getPages());
+            mStoredPages.add(query + '\t' + page);
+        }
+        return newStories.size();
+    }
+
+    private void writeSnapshot(StoryPage storyPage) throws IOException {
+        String name = String.format(Locale.US, "%s%08d%s", SNAPSHOT_PREFIX,
+                mNextSnapshot.getAndIncrement(), SNAPSHOT_SUFFIX);
+        File file = new File(mDirectory, name);
+        File tempFile = new File(mDirectory, name + ".tmp");
+        FileOutputStream output = new FileOutputStream(tempFile);
+        try {
+            output.write(StorySnapshot.write(storyPage));
+            // On the disk before the rename, or a crash could leave an empty snapshot in place
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+
+        // Rename the snapshot into place at once, so a reader never sees a partly written one
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Problem renaming " + tempFile);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        mCheckpoint.close();
+    }
+
+    /**
+     * Write of a snapshot that the pages with the same stories wait for.
+     */
+    private static final class SnapshotWrite {
+
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile boolean mStored;
+
+        void finish(boolean stored) {
+            mStored = stored;
+            mDone.countDown();
+        }
+
+        /**
+         * Wait until the write is finished and return true if its stories are stored.
+         */
+        boolean await() throws InterruptedIOException {
+            try {
+                mDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a snapshot");
+            }
+            return mStored;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.newsapp;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Tells a load, and every request and parse it runs, that its result is not wanted any more.
+ * <p>
+ * Code that blocks registers a listener that unblocks it, like cancelling the HTTP call that is
+ * being read, and loops check {@link #throwIfCanceled()} between their steps. A listener is
+ * unregistered once the code it unblocks is done, so a token that outlives many requests does
+ * not keep their listeners. A token is cancelled once and stays cancelled. All methods are
+ * thread safe.
+ */
+public final class CancellationToken {
+
+    /* Registered listeners to call on cancellation, null once cancelled */
+    private LinkedHashSet<Registration> mRegistrations = new LinkedHashSet<>();
+
+    private volatile boolean mCanceled;
+
+    /**
+     * Cancel the token: call its listeners and wake up the threads waiting in {@link #sleep}.
+     */
+    public void cancel() {
+        List<Registration> registrations;
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            registrations = new ArrayList<>(mRegistrations);
+            mRegistrations = null;
+            notifyAll();
+        }
+        for (Registration registration : registrations) {
+            registration.mListener.run();
+        }
+    }
+
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Throw an {@link InterruptedIOException} if the token has been cancelled, which ends the
+     * request or the parse that checks it like a broken connection.
+     */
+    public void throwIfCanceled() throws InterruptedIOException {
+        if (mCanceled) {
+            throw new InterruptedIOException("Canceled");
+        }
+    }
+
+    /**
+     * Add a listener that is called on cancellation, on the thread that cancels. It is called
+     * right away if the token has already been cancelled. Unregister it through the returned
+     * {@link Registration} once it is not needed any more.
+     */
+    public Registration addOnCancelListener(Runnable listener) {
+        Registration registration = new Registration(listener);
+        synchronized (this) {
+            if (!mCanceled) {
+                mRegistrations.add(registration);
+                return registration;
+            }
+        }
+        listener.run();
+        return registration;
+    }
+
+    /* Remove the given registration, return true if it has not been called */
+    private synchronized boolean remove(Registration registration) {
+        return mRegistrations != null && mRegistrations.remove(registration);
+    }
+
+    /**
+     * Wait for the given time, or until the token is cancelled.
+     *
+     * @throws InterruptedIOException if the token is cancelled or the thread is interrupted
+     */
+    public synchronized void sleep(long millis) throws InterruptedIOException {
+        long end = System.currentTimeMillis() + millis;
+        try {
+            for (long left = millis; left > 0 && !mCanceled;
+                 left = end - System.currentTimeMillis()) {
+                wait(left);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        }
+        throwIfCanceled();
+    }
+
+    /**
+     * A listener that has been added to a {@link CancellationToken}.
+     */
+    public final class Registration {
+
+        private final Runnable mListener;
+
+        private Registration(Runnable listener) {
+            mListener = listener;
+        }
+
+        /**
+         * Remove the listener from the token. Return true if it has been removed before it was
+         * called, false if the token has been cancelled first.
+         */
+        public boolean unregister() {
+            return remove(this);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.android.newsapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Performs the HTTP requests of {@link QueryUtils}.
+ * <p>
+ * The default transport is the {@link OkHttpTransport}. Another transport, for example one that
+ * answers with recorded responses, can be set with {@link QueryUtils#setTransport(HttpTransport)}.
+ */
+public interface HttpTransport {
+
+    /**
+     * Perform a GET request to the given URL with the given request headers. Cancelling the
+     * given token aborts the request and the reading of its body.
+     */
+    Response get(String url, Map<String, String> headers, CancellationToken token)
+            throws IOException;
+
+    /**
+     * The response to a request. Closing it releases the connection for the next request.
+     */
+    interface Response extends Closeable {
+
+        /* Status code of the response */
+        int getCode();
+
+        /* Value of the given response header, or null if it is not set */
+        String getHeader(String name);
+
+        /* Body of the response, exactly as it came over the wire */
+        InputStream getBody() throws IOException;
+    }
+}
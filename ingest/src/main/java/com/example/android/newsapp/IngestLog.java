@@ -0,0 +1,53 @@
+package com.example.android.newsapp;
+
+/**
+ * Error log of the story ingestion, which runs on Android and on any JVM.
+ * <p>
+ * The messages go to standard error until a {@link Logger} is set, on Android one that writes
+ * them to the Android log.
+ */
+public final class IngestLog {
+
+    /**
+     * Receives the log messages.
+     */
+    public interface Logger {
+        void e(String tag, String message, Throwable throwable);
+    }
+
+    /**
+     * Writes the messages to standard error
+     */
+    public static final Logger STANDARD_ERROR = new Logger() {
+        @Override
+        public void e(String tag, String message, Throwable throwable) {
+            System.err.println("E/" + tag + ": " + message);
+            if (throwable != null) {
+                throwable.printStackTrace();
+            }
+        }
+    };
+
+    private static volatile Logger sLogger = STANDARD_ERROR;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link IngestLog} object.
+     */
+    private IngestLog() {
+    }
+
+    /**
+     * Send the messages to the given logger.
+     */
+    public static void setLogger(Logger logger) {
+        sLogger = logger;
+    }
+
+    public static void e(String tag, String message) {
+        sLogger.e(tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable throwable) {
+        sLogger.e(tag, message, throwable);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.newsapp;
+
+/**
+ * Timers and counters for the stages of the story pipeline, from the HTTP request to the
+ * binding of the list items.
+ * <p>
+ * The measurements go to the {@link Exporter} that is set. Without an exporter nothing is
+ * measured: {@link #start()} returns 0 without reading the clock and {@link #stop} returns
+ * right away, so the calls can stay in the code at almost no cost.
+ */
+public final class Metrics {
+
+    /* Names of the timers */
+    public static final String HTTP_CONNECT = "http.connect";
+    public static final String HTTP_TTFB = "http.ttfb";
+    public static final String HTTP_TRANSFER = "http.transfer";
+    public static final String READ_FROM_STREAM = "read.stream";
+    public static final String PARSE_JSON = "parse.json";
+    public static final String PARSE_STREAM = "parse.stream";
+    public static final String STORE_QUERY = "store.query";
+    public static final String STORE_SEARCH = "store.search";
+    public static final String LOADER_LOAD = "loader.load";
+    public static final String LOADER_DELIVERY = "loader.delivery";
+    public static final String ADAPTER_BIND = "adapter.bind";
+
+    /* Names of the counters */
+    public static final String HTTP_NOT_MODIFIED = "http.not_modified";
+    public static final String HTTP_ERROR = "http.error";
+    public static final String FETCH_SHARED = "fetch.shared";
+    public static final String FETCH_RETRY = "fetch.retry";
+    public static final String FETCH_REJECTED = "fetch.rejected";
+    public static final String PAYLOAD_BYTES = "payload.bytes";
+    public static final String PAYLOAD_STORIES = "payload.stories";
+
+    /**
+     * Receives the measurements. It is called on the thread that measured, which may be the
+     * main thread, so it has to be thread safe and fast.
+     */
+    public interface Exporter {
+
+        /**
+         * A stage with the given name took the given time and handled the given number of
+         * units, like bytes or stories, or 0 if it has no units.
+         */
+        void onTiming(String name, long durationNanos, long units);
+
+        /**
+         * The counter with the given name went up by the given amount.
+         */
+        void onCount(String name, long delta);
+    }
+
+    /**
+     * Exporter of the measurements, null if nothing is measured
+     */
+    private static volatile Exporter sExporter;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link Metrics} object.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Set the exporter of the measurements, or null to stop measuring.
+     */
+    public static void setExporter(Exporter exporter) {
+        sExporter = exporter;
+    }
+
+    public static boolean isEnabled() {
+        return sExporter != null;
+    }
+
+    /**
+     * Return the start time of a timer, or 0 if nothing is measured.
+     */
+    public static long start() {
+        return sExporter != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stop the timer with the given name that started at the given time.
+     */
+    public static void stop(String name, long startNanos) {
+        stop(name, startNanos, 0);
+    }
+
+    /**
+     * Stop the timer with the given name that started at the given time and handled the given
+     * number of units.
+     */
+    public static void stop(String name, long startNanos, long units) {
+        Exporter exporter = sExporter;
+        if (exporter == null || startNanos == 0) {
+            return;
+        }
+        exporter.onTiming(name, System.nanoTime() - startNanos, units);
+    }
+
+    /**
+     * Count one more of the given counter.
+     */
+    public static void count(String name) {
+        count(name, 1);
+    }
+
+    /**
+     * Count the given number more of the given counter.
+     */
+    public static void count(String name, long delta) {
+        Exporter exporter = sExporter;
+        if (exporter != null) {
+            exporter.onCount(name, delta);
+        }
+    }
+}
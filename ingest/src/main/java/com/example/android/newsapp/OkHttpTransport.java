@@ -0,0 +1,160 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+
+/**
+ * {@link HttpTransport} based on OkHttp. Connections are kept alive in a pool and reused by
+ * later requests, and HTTP/2 is used whenever the server supports it.
+ * <p>
+ * The time from the start of a request until it has a connection, which takes the DNS lookup
+ * and the handshakes for a new connection, is measured as {@link Metrics#HTTP_CONNECT}, once
+ * per request even if it is redirected.
+ */
+public class OkHttpTransport implements HttpTransport {
+
+    /**
+     * Default timeouts of a request
+     */
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+    public static final long DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Number of idle connections kept in the pool and how long they are kept
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    /**
+     * Network interceptors run once the connection is there, for every redirect and retry of a
+     * request as well. The start time of the request comes with its tag, which the follow-up
+     * requests share.
+     */
+    private static final Interceptor CONNECT_TIMER = new Interceptor() {
+        @Override
+        public okhttp3.Response intercept(Chain chain) throws IOException {
+            Object requestStart = chain.request().tag();
+            if (requestStart instanceof RequestStart) {
+                ((RequestStart) requestStart).onConnected();
+            }
+            return chain.proceed(chain.request());
+        }
+    };
+
+    private final OkHttpClient mClient;
+
+    /**
+     * Constructs a new {@link OkHttpTransport} with the default timeouts.
+     */
+    public OkHttpTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructs a new {@link OkHttpTransport}.
+     *
+     * @param connectTimeoutMillis is the timeout for opening a connection
+     * @param readTimeoutMillis    is the timeout for reading from a connection
+     */
+    public OkHttpTransport(long connectTimeoutMillis, long readTimeoutMillis) {
+        mClient = new OkHttpClient.Builder()
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES,
+                        TimeUnit.MINUTES))
+                .addNetworkInterceptor(CONNECT_TIMER)
+                .build();
+    }
+
+    @Override
+    public HttpTransport.Response get(String url, Map<String, String> headers,
+                                      CancellationToken token) throws IOException {
+        Request.Builder builder = new Request.Builder().url(url).get().tag(new RequestStart());
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+
+        // Cancelling the call closes its socket, which ends a blocked read
+        final Call call = mClient.newCall(builder.build());
+        CancellationToken.Registration registration = token.addOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                call.cancel();
+            }
+        });
+        try {
+            return new OkHttpResponse(call.execute(), registration);
+        } catch (IOException | RuntimeException e) {
+            registration.unregister();
+            throw e;
+        }
+    }
+
+    /**
+     * Start time of a request, which measures the time until its first connection.
+     */
+    private static final class RequestStart {
+
+        private final long mStart = Metrics.start();
+        private boolean mConnected;
+
+        /* The interceptors of a call run on its thread, one after the other */
+        void onConnected() {
+            if (!mConnected) {
+                mConnected = true;
+                Metrics.stop(Metrics.HTTP_CONNECT, mStart);
+            }
+        }
+    }
+
+    /**
+     * Adapts an OkHttp response to the {@link HttpTransport.Response} interface.
+     */
+    private static final class OkHttpResponse implements HttpTransport.Response {
+
+        private final okhttp3.Response mResponse;
+
+        /* Cancels the call while its body is read */
+        private final CancellationToken.Registration mRegistration;
+
+        OkHttpResponse(okhttp3.Response response, CancellationToken.Registration registration) {
+            mResponse = response;
+            mRegistration = registration;
+        }
+
+        @Override
+        public int getCode() {
+            return mResponse.code();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return mResponse.header(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            ResponseBody body = mResponse.body();
+            if (body == null) {
+                throw new IOException("Response without body");
+            }
+            return body.byteStream();
+        }
+
+        @Override
+        public void close() {
+            // Closing the response hands the connection back to the pool
+            mResponse.close();
+            mRegistration.unregister();
+        }
+    }
+}
@@ -0,0 +1,586 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Helper methods related to requesting and receiving data from guardian news API
+ */
+public final class QueryUtils {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = QueryUtils.class.getSimpleName();
+
+    /**
+     * Status when JSON response is ok
+     */
+    private static final String JSON_STATUS_OK = "ok";
+
+    /**
+     * Fields and tags of a result that {@link Story} is built from, nothing else is requested.
+     * The guardian always sends the other properties of a result and of a tag, they cannot be
+     * left out.
+     */
+    public static final String SHOW_FIELDS = "thumbnail";
+    public static final String SHOW_TAGS = "contributor";
+
+    /**
+     * Whether responses are read with the {@link StoryStreamParser} instead of being
+     * buffered into a String and parsed into a JSONObject tree
+     */
+    private static volatile boolean sStreamingParserEnabled = true;
+
+    /**
+     * Number of response bytes received over the network
+     */
+    private static final AtomicLong sBytesReceived = new AtomicLong();
+
+    /**
+     * Number of response bytes of the parsed pages and number of stories in them
+     */
+    private static final AtomicLong sPayloadBytes = new AtomicLong();
+    private static final AtomicLong sPayloadStories = new AtomicLong();
+
+    /**
+     * Transport that performs the HTTP requests, behind the retry and rate limit policy
+     */
+    private static volatile HttpTransport sTransport =
+            new ResilientTransport(new OkHttpTransport());
+
+    /**
+     * Requests that are running, by normalized URL, shared by the callers of the same query
+     */
+    private static final SingleFlight<StoryPage> sInFlight = new SingleFlight<>();
+
+    /**
+     * Create a private constructor because no one should ever create a {@link QueryUtils} object.
+     * This class is only meant to hold static variables and methods, which can be accessed
+     * directly from the class name QueryUtils (and an object instance of QueryUtils is not needed).
+     */
+    private QueryUtils() {
+    }
+
+    /**
+     * Switch between the streaming parser and the legacy JSONObject parser.
+     */
+    public static void setStreamingParserEnabled(boolean enabled) {
+        sStreamingParserEnabled = enabled;
+    }
+
+    public static boolean isStreamingParserEnabled() {
+        return sStreamingParserEnabled;
+    }
+
+    /**
+     * Replace the transport that performs the HTTP requests, for example to change its timeouts
+     * or to answer requests without a network.
+     */
+    public static void setTransport(HttpTransport transport) {
+        sTransport = transport;
+    }
+
+    /**
+     * Return true if the guardian keeps failing, so requests to it are held back for a while
+     * and the caches are all there is.
+     */
+    public static boolean isUpstreamFailing() {
+        HttpTransport transport = sTransport;
+        return transport instanceof ResilientTransport
+                && ((ResilientTransport) transport).isFailing();
+    }
+
+    /**
+     * Query the USGS dataset and return a list of {@link Story} objects.
+     */
+    public static List<Story> fetchStoryData(String requestUrl) {
+        StoryPage storyPage = fetchStoryPage(requestUrl, null, null, new CancellationToken());
+        return storyPage == null ? null : storyPage.getStories();
+    }
+
+    /**
+     * Query the guardian API and return one {@link StoryPage}, or null if the request failed
+     * or the given token has been cancelled.
+     */
+    public static StoryPage fetchStoryPage(String requestUrl, CancellationToken token) {
+        return fetchStoryPage(requestUrl, null, null, token);
+    }
+
+    /**
+     * Return the {@link StoryPage} of the given guardian search response, read with the
+     * streaming parser. The stream is closed.
+     */
+    public static StoryPage parseStoryPage(InputStream inputStream) throws IOException {
+        return StoryStreamParser.parse(inputStream, null);
+    }
+
+    /**
+     * Query the guardian API and return one {@link StoryPage}. The listener is called
+     * for every story as soon as it has been read, or after the whole response has been parsed
+     * when the streaming parser is disabled.
+     * <p>
+     * If a cached page with validators is given, the request is made conditional and the cached
+     * page itself is returned without any parsing when the server answers that it is unchanged.
+     * <p>
+     * Requests for the same normalized URL that come while one is running share its response
+     * instead of making their own. Their listener is called for every story of the shared page
+     * once it has been parsed.
+     * <p>
+     * Null is returned as soon as the given token is cancelled. The request and the parse are
+     * stopped once the tokens of all callers that share them are cancelled.
+     */
+    static StoryPage fetchStoryPage(final String requestUrl, final StoryPage cachedPage,
+                                    final StoryStreamParser.OnStoryParsedListener listener,
+                                    CancellationToken token) {
+        StoryPage storyPage = sInFlight.execute(normalizeUrl(requestUrl), token,
+                new SingleFlight.Call<StoryPage>() {
+            @Override
+            StoryPage call(CancellationToken flightToken) {
+                return requestStoryPage(requestUrl, cachedPage, listener, flightToken);
+            }
+
+            @Override
+            void onShared(StoryPage storyPage) {
+                Metrics.count(Metrics.FETCH_SHARED);
+                if (storyPage != null && listener != null) {
+                    for (Story story : storyPage.getStories()) {
+                        listener.onStoryParsed(story);
+                    }
+                }
+            }
+        });
+        return token.isCanceled() ? null : storyPage;
+    }
+
+    /**
+     * Return the number of requests that shared the response of a running request so far.
+     */
+    public static long getSharedRequestCount() {
+        return sInFlight.getSharedCount();
+    }
+
+    /**
+     * Make the request of {@link #fetchStoryPage} and return its {@link StoryPage}.
+     */
+    private static StoryPage requestStoryPage(String requestUrl, StoryPage cachedPage,
+                                              StoryStreamParser.OnStoryParsedListener listener,
+                                              CancellationToken token) {
+        // Create URL object
+        URL url = createUrl(requestUrl);
+
+        // Perform HTTP request to the URL and parse the JSON response
+        StoryPage storyPage = null;
+        try {
+            storyPage = makeHttpRequest(url, cachedPage, listener, token);
+        } catch (InterruptedIOException e) {
+            // Nobody wants the page any more
+            return null;
+        } catch (IOException e) {
+            IngestLog.e(LOG_TAG, "Problem making the HTTP request.", e);
+        }
+
+        // Return the page of {@link Story}s
+        return storyPage;
+    }
+
+    /**
+     * Return the number of bytes received over the network so far, as they went over the wire.
+     */
+    public static long getBytesReceived() {
+        return sBytesReceived.get();
+    }
+
+    /**
+     * Return the average number of response bytes per story of the pages parsed so far, as they
+     * went over the wire, or 0 if no story has been parsed.
+     */
+    public static double getPayloadBytesPerStory() {
+        long stories = sPayloadStories.get();
+        return stories > 0 ? (double) sPayloadBytes.get() / stories : 0;
+    }
+
+    private static void countPayload(long bytes, int stories) {
+        sPayloadBytes.addAndGet(bytes);
+        sPayloadStories.addAndGet(stories);
+        Metrics.count(Metrics.PAYLOAD_BYTES, bytes);
+        Metrics.count(Metrics.PAYLOAD_STORIES, stories);
+    }
+
+    /**
+     * Return the given query URL in a normalized form, with the scheme and host in lower case and
+     * the query parameters sorted, so that equal queries map to the same string.
+     */
+    public static String normalizeUrl(String requestUrl) {
+        int queryStart = requestUrl.indexOf('?');
+        String base = queryStart < 0 ? requestUrl : requestUrl.substring(0, queryStart);
+        int pathStart = base.indexOf('/', base.indexOf("://") + 3);
+        if (pathStart < 0) {
+            base = base.toLowerCase(Locale.US);
+        } else {
+            base = base.substring(0, pathStart).toLowerCase(Locale.US) + base.substring(pathStart);
+        }
+        if (queryStart < 0 || queryStart == requestUrl.length() - 1) {
+            return base;
+        }
+
+        String[] parameters = requestUrl.substring(queryStart + 1).split("&");
+        Arrays.sort(parameters);
+        StringBuilder builder = new StringBuilder(requestUrl.length());
+        builder.append(base);
+        char separator = '?';
+        for (String parameter : parameters) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            builder.append(separator).append(parameter);
+            separator = '&';
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns new URL object from the given string URL.
+     */
+    private static URL createUrl(String stringUrl) {
+        URL url = null;
+        try {
+            url = new URL(stringUrl);
+        } catch (MalformedURLException e) {
+            IngestLog.e(LOG_TAG, "Problem building the URL ", e);
+        }
+        return url;
+    }
+
+    /**
+     * Make an HTTP request to the given URL and return the {@link StoryPage} of the response.
+     */
+    private static StoryPage makeHttpRequest(URL url, StoryPage cachedPage,
+                                             StoryStreamParser.OnStoryParsedListener listener,
+                                             CancellationToken token)
+            throws IOException {
+        // If the URL is null, then return early.
+        if (url == null) {
+            return null;
+        }
+
+        HttpTransport.Response response = null;
+        InputStream inputStream = null;
+        try {
+            // Time until the response headers are there, with the connect and any retries
+            long requestStart = Metrics.start();
+            response = sTransport.get(url.toString(), requestHeaders(cachedPage), token);
+            Metrics.stop(Metrics.HTTP_TTFB, requestStart);
+            int responseCode = response.getCode();
+
+            // The cached page is still up to date
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedPage != null) {
+                Metrics.count(Metrics.HTTP_NOT_MODIFIED);
+                return cachedPage;
+            }
+
+            // If the request was successful (response code 200),
+            // then read the input stream and parse the response.
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // The body is parsed while it comes in, so the transfer includes the parsing
+                long transferStart = Metrics.start();
+                CountingInputStream countingStream = new CountingInputStream(response.getBody());
+                inputStream = openResponseStream(response, countingStream);
+                StoryPage storyPage = parseResponse(inputStream, listener, token);
+                Metrics.stop(Metrics.HTTP_TRANSFER, transferStart, countingStream.getCount());
+                if (storyPage == null) {
+                    return null;
+                }
+                countPayload(countingStream.getCount(), storyPage.getStories().size());
+                return new StoryPage(storyPage.getStories(), storyPage.getCurrentPage(),
+                        storyPage.getPages(), response.getHeader("ETag"),
+                        response.getHeader("Last-Modified"));
+            } else {
+                Metrics.count(Metrics.HTTP_ERROR);
+                IngestLog.e(LOG_TAG, "Error response code: " + responseCode);
+            }
+        } catch (IOException e) {
+            // A cancelled request ends like a broken connection
+            if (!token.isCanceled()) {
+                IngestLog.e(LOG_TAG, "Problem retrieving the JSON results.", e);
+            }
+        } finally {
+            if (inputStream != null) {
+                // Closing the input stream could throw an IOException, which is why
+                // the makeHttpRequest(URL url) method signature specifies than an IOException
+                // could be thrown.
+                inputStream.close();
+            }
+            if (response != null) {
+                // Hand the connection back for the next request
+                response.close();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse the response with the streaming parser, or with the legacy parser if the streaming
+     * parser is disabled.
+     */
+    private static StoryPage parseResponse(InputStream inputStream,
+                                           StoryStreamParser.OnStoryParsedListener listener,
+                                           CancellationToken token)
+            throws IOException {
+        if (sStreamingParserEnabled) {
+            long parseStart = Metrics.start();
+            StoryPage storyPage = StoryStreamParser.parse(inputStream, listener, token);
+            Metrics.stop(Metrics.PARSE_STREAM, parseStart,
+                    storyPage != null ? storyPage.getStories().size() : 0);
+            return storyPage;
+        }
+
+        // Extract relevant fields from the JSON response and create a page of {@link Story}s
+        String storyJson = readFromStream(inputStream);
+        token.throwIfCanceled();
+        StoryPage storyPage = extractStoryFeatureFromJson(storyJson);
+        if (storyPage != null && listener != null) {
+            for (Story story : storyPage.getStories()) {
+                listener.onStoryParsed(story);
+            }
+        }
+        return storyPage;
+    }
+
+    /**
+     * Return the headers of a GET request that asks for a gzip compressed response and is
+     * conditional if the cached page has validators.
+     */
+    private static Map<String, String> requestHeaders(StoryPage cachedPage) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "gzip");
+        if (cachedPage != null) {
+            if (cachedPage.getETag() != null) {
+                headers.put("If-None-Match", cachedPage.getETag());
+            }
+            if (cachedPage.getLastModified() != null) {
+                headers.put("If-Modified-Since", cachedPage.getLastModified());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Return the given counting stream of the body of the response, decompressed if the server
+     * sent it gzip compressed.
+     */
+    private static InputStream openResponseStream(HttpTransport.Response response,
+                                                  CountingInputStream countingStream)
+            throws IOException {
+        InputStream inputStream = countingStream;
+        if ("gzip".equalsIgnoreCase(response.getHeader("Content-Encoding"))) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+        return inputStream;
+    }
+
+    /**
+     * Convert the {@link InputStream} into a String which contains the
+     * whole JSON response from the server.
+     */
+    static String readFromStream(InputStream inputStream) throws IOException {
+        long readStart = Metrics.start();
+        StringBuilder output = new StringBuilder();
+        if (inputStream != null) {
+            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
+            BufferedReader reader = new BufferedReader(inputStreamReader);
+            String line = reader.readLine();
+            while (line != null) {
+                output.append(line);
+                line = reader.readLine();
+            }
+        }
+        Metrics.stop(Metrics.READ_FROM_STREAM, readStart, output.length());
+        return output.toString();
+    }
+
+
+    /**
+     * Return a {@link StoryPage} with the {@link Story} objects that have been built up from
+     * parsing the given JSON response.
+     */
+    static StoryPage extractStoryFeatureFromJson(String storyJSON) {
+        // If the JSON string is empty or null, then return early.
+        if (storyJSON == null || storyJSON.isEmpty()) {
+            return null;
+        }
+
+        long parseStart = Metrics.start();
+
+        // Create an empty ArrayList that we can start adding stories to
+        ArrayList<Story> stories = new ArrayList<>();
+
+        // Paging information of the response
+        int currentPage = 0;
+        int pages = 0;
+
+        // Try to parse the JSON response string. If there's a problem with the way the JSON
+        // is formatted, a JSONException exception object will be thrown.
+        // Catch the exception so the app doesn't crash, and print the error message to the logs.
+        try {
+
+            // Create a JSONObject from the JSON response string
+            JSONObject baseJsonResponse = new JSONObject(storyJSON).getJSONObject("response");
+
+            // Check if json response is ok
+            if (!baseJsonResponse.getString("status").equals(JSON_STATUS_OK)) {
+                IngestLog.e(LOG_TAG, "Bad status of json response");
+                return new StoryPage(stories, currentPage, pages);
+            }
+
+            // Extract the paging information
+            currentPage = baseJsonResponse.optInt("currentPage");
+            pages = baseJsonResponse.optInt("pages");
+
+            // Extract the JSONArray associated with the key called "results",
+            // which represents an array of news stories.
+            JSONArray storyArray = baseJsonResponse.getJSONArray("results");
+
+            // For each story in the storyArray, create an {@link Story} object
+            for (int i = 0; i < storyArray.length(); i++) {
+
+                // Get a single story at position i within the list of stories
+                JSONObject currentStory = storyArray.getJSONObject(i);
+
+                //Extract the story title
+                String title = currentStory.getString("webTitle");
+
+                //Extract the story date
+                String publicationDate = currentStory.getString("webPublicationDate");
+                long timeInMillis = StoryDateCodec.parsePublicationDate(publicationDate);
+
+                //Extract the story's url
+                String storyUrl = currentStory.getString("webUrl");
+
+                //Extract the story's section, shared with the other stories of the section
+                StoryDictionary dictionary = StoryDictionary.getInstance();
+                String sectionId = dictionary.name(currentStory.optString("sectionId", null));
+                String section = dictionary.name(currentStory.getString("sectionName"));
+
+                //Extract the story's image
+                String thumbnailUrl = null;
+                if (currentStory.has("fields")) {
+                    JSONObject fields = currentStory.getJSONObject("fields");
+                    if (fields.has("thumbnail"))
+                        thumbnailUrl = fields.getString("thumbnail");
+                }
+
+                // Extract author names
+                ArrayList<String> authors = new ArrayList<>();
+                if (currentStory.has("tags")){
+                    JSONArray tags = currentStory.getJSONArray("tags");
+                    JSONObject tag;
+                    for (int j = 0; j < tags.length(); j++){
+                        tag = tags.getJSONObject(j);
+                        if (tag.has("webTitle"))
+                            authors.add(tag.getString("webTitle"));
+                    }
+                }
+
+
+                // Create a new {@link Story} object
+                Story story = new Story(title, dictionary.authors(authors), timeInMillis, storyUrl,
+                        sectionId, section, thumbnailUrl);
+
+                // Add the new {@link Story} to the list of stories.
+                stories.add(story);
+            }
+
+        } catch (JSONException e) {
+            // If an error is thrown when executing any of the above statements in the "try" block,
+            // catch the exception here, so the app doesn't crash. Print a log message
+            // with the message from the exception.
+            IngestLog.e(LOG_TAG, "Problem parsing the story JSON results", e);
+        }
+
+        // Return the page of stories
+        Metrics.stop(Metrics.PARSE_JSON, parseStart, stories.size());
+        return new StoryPage(stories, currentPage, pages);
+    }
+
+    /**
+     * Counts the bytes read from the wrapped stream, in the stream itself and into
+     * {@link #sBytesReceived}.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long mCount;
+
+        CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                mCount++;
+                sBytesReceived.incrementAndGet();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mCount += read;
+                sBytesReceived.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            mCount += skipped;
+            sBytesReceived.addAndGet(skipped);
+            return skipped;
+        }
+    }
+
+}
\ No newline at end of file
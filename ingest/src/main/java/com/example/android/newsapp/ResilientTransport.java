@@ -0,0 +1,448 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link HttpTransport} that puts a fetch policy in front of another transport.
+ * <p>
+ * Failed requests, and responses with a status that says the server is overloaded, are tried
+ * again after an exponential backoff with jitter, or after the time the server asked for with
+ * a Retry-After header. A circuit breaker for each host stops sending requests to a host that
+ * keeps failing for a while, so the caches are served right away instead of waiting for
+ * timeouts. The requests of each API key are limited by a token bucket, so the small budget of
+ * the guardian test key is not used up by a burst of requests.
+ */
+public class ResilientTransport implements HttpTransport {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ResilientTransport.class.getSimpleName();
+
+    /**
+     * Default number of attempts of a request and the bounds of the backoff between them
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_BACKOFF_MILLIS = 500;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 8000;
+
+    /**
+     * Default number of failures in a row that open the circuit of a host and how long it stays
+     * open before a trial request is let through
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_MILLIS = 30000;
+
+    /**
+     * Default number of requests an API key may burst, the time in which one more request is
+     * allowed, and the longest time a request waits for its turn
+     */
+    public static final int DEFAULT_BUDGET_REQUESTS = 5;
+    public static final long DEFAULT_BUDGET_REFILL_MILLIS = 1000;
+    public static final long DEFAULT_MAX_BUDGET_WAIT_MILLIS = 5000;
+
+    /**
+     * Status code of a response to too many requests
+     */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Source of the time and of the waits, which can be replaced to run the policy without
+     * waiting for real.
+     */
+    public interface Clock {
+
+        long currentTimeMillis();
+
+        /**
+         * Wait for the given time, unless the given token is cancelled first.
+         */
+        void sleep(long millis, CancellationToken token) throws InterruptedIOException;
+    }
+
+    /**
+     * {@link Clock} of the system
+     */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void sleep(long millis, CancellationToken token) throws InterruptedIOException {
+            token.sleep(millis);
+        }
+    };
+
+    /**
+     * Thrown instead of making a request while the circuit of the host is open or the budget
+     * of the API key does not allow it in time.
+     */
+    public static class UpstreamUnavailableException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        UpstreamUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    private final HttpTransport mTransport;
+    private final Clock mClock;
+    private final Random mRandom;
+
+    private final int mMaxAttempts;
+    private final long mBaseBackoffMillis;
+    private final long mMaxBackoffMillis;
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+    private final int mBudgetRequests;
+    private final long mBudgetRefillMillis;
+    private final long mMaxBudgetWaitMillis;
+
+    /* Circuit breakers by host and request budgets by API key */
+    private final HashMap<String, CircuitBreaker> mBreakers = new HashMap<>();
+    private final HashMap<String, RequestBudget> mBudgets = new HashMap<>();
+
+    /**
+     * Constructs a new {@link ResilientTransport} with the default policy.
+     *
+     * @param transport performs the requests
+     */
+    public ResilientTransport(HttpTransport transport) {
+        this(transport, SYSTEM_CLOCK, new Random(), DEFAULT_MAX_ATTEMPTS,
+                DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS,
+                DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS, DEFAULT_BUDGET_REQUESTS,
+                DEFAULT_BUDGET_REFILL_MILLIS, DEFAULT_MAX_BUDGET_WAIT_MILLIS);
+    }
+
+    /**
+     * Constructs a new {@link ResilientTransport}.
+     *
+     * @param transport           performs the requests
+     * @param clock               is the source of the time and the waits
+     * @param random              picks the jitter of the backoff
+     * @param maxAttempts         is the number of attempts of a request
+     * @param baseBackoffMillis   is the backoff after the first attempt, doubled after each one
+     * @param maxBackoffMillis    is the longest backoff, longer Retry-After times are not waited
+     * @param failureThreshold    is the number of failures in a row that open a circuit
+     * @param openMillis          is how long a circuit stays open
+     * @param budgetRequests      is the number of requests an API key may burst
+     * @param budgetRefillMillis  is the time in which an API key may make one more request
+     * @param maxBudgetWaitMillis is the longest time a request waits for its budget
+     */
+    public ResilientTransport(HttpTransport transport, Clock clock, Random random,
+                              int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                              int failureThreshold, long openMillis, int budgetRequests,
+                              long budgetRefillMillis, long maxBudgetWaitMillis) {
+        mTransport = transport;
+        mClock = clock;
+        mRandom = random;
+        mMaxAttempts = maxAttempts;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+        mBudgetRequests = budgetRequests;
+        mBudgetRefillMillis = budgetRefillMillis;
+        mMaxBudgetWaitMillis = maxBudgetWaitMillis;
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers, CancellationToken token)
+            throws IOException {
+        CircuitBreaker breaker = breaker(hostOf(url));
+        RequestBudget budget = budget(budgetKeyOf(url));
+
+        for (int attempt = 1; ; attempt++) {
+            token.throwIfCanceled();
+            int permit = breaker.allowRequest(mClock.currentTimeMillis());
+            if (permit == CircuitBreaker.REJECTED) {
+                Metrics.count(Metrics.FETCH_REJECTED);
+                throw new UpstreamUnavailableException("Circuit open for " + url);
+            }
+            boolean trial = permit == CircuitBreaker.TRIAL;
+            long budgetWait = budget.reserve(mClock.currentTimeMillis());
+            if (budgetWait > mMaxBudgetWaitMillis) {
+                breaker.onCanceled(trial);
+                Metrics.count(Metrics.FETCH_REJECTED);
+                throw new UpstreamUnavailableException("Request budget used up for " + url);
+            }
+            try {
+                sleep(budgetWait, token);
+            } catch (IOException e) {
+                breaker.onCanceled(trial);
+                throw e;
+            }
+
+            Response response;
+            try {
+                response = mTransport.get(url, headers, token);
+            } catch (IOException e) {
+                if (token.isCanceled()) {
+                    // Not a failure of the host
+                    breaker.onCanceled(trial);
+                    throw e;
+                }
+                breaker.onFailure(mClock.currentTimeMillis(), 0, trial);
+                if (attempt >= mMaxAttempts) {
+                    throw e;
+                }
+                Metrics.count(Metrics.FETCH_RETRY);
+                IngestLog.e(LOG_TAG, "Attempt " + attempt + " failed, trying again", e);
+                sleep(backoffMillis(attempt), token);
+                continue;
+            }
+
+            int code = response.getCode();
+            if (!isRetryable(code)) {
+                breaker.onSuccess(trial);
+                return response;
+            }
+
+            // The server is failing or asks for fewer requests
+            long retryAfterMillis = retryAfterMillis(response.getHeader("Retry-After"));
+            breaker.onFailure(mClock.currentTimeMillis(), retryAfterMillis, trial);
+            if (attempt >= mMaxAttempts || retryAfterMillis > mMaxBackoffMillis) {
+                return response;
+            }
+            response.close();
+            Metrics.count(Metrics.FETCH_RETRY);
+            IngestLog.e(LOG_TAG, "Attempt " + attempt + " got response code " + code
+                    + ", trying again");
+            sleep(Math.max(retryAfterMillis, backoffMillis(attempt)), token);
+        }
+    }
+
+    /**
+     * Return true if the circuit of any host is open, or has not been closed by a successful
+     * trial request since.
+     */
+    public boolean isFailing() {
+        long now = mClock.currentTimeMillis();
+        synchronized (mBreakers) {
+            for (CircuitBreaker breaker : mBreakers.values()) {
+                if (breaker.isOpen(now)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true if a response with the given status code is worth trying again.
+     */
+    private static boolean isRetryable(int code) {
+        return code == HTTP_TOO_MANY_REQUESTS || (code >= 500 && code != 501 && code < 600);
+    }
+
+    /**
+     * Return the backoff after the given attempt: the exponential backoff, bounded by the
+     * maximum backoff, of which a random part is left out so that clients do not retry in step.
+     */
+    long backoffMillis(int attempt) {
+        long backoff = mMaxBackoffMillis;
+        if (attempt - 1 < 31) {
+            backoff = Math.min(mMaxBackoffMillis, mBaseBackoffMillis << (attempt - 1));
+        }
+        long half = backoff / 2;
+        return half + (long) (mRandom.nextDouble() * (backoff - half));
+    }
+
+    /**
+     * Return the time in milliseconds a Retry-After header asks to wait, given either in seconds
+     * or as an HTTP date, or 0 if there is no such header or it is malformed.
+     */
+    long retryAfterMillis(String retryAfter) {
+        if (retryAfter == null) {
+            return 0;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(retryAfter) * 1000);
+        } catch (NumberFormatException e) {
+            // Not in seconds, try the HTTP date below
+        }
+        SimpleDateFormat httpDate =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        try {
+            return Math.max(0, httpDate.parse(retryAfter).getTime()
+                    - mClock.currentTimeMillis());
+        } catch (ParseException e) {
+            IngestLog.e(LOG_TAG, "Malformed Retry-After header: " + retryAfter);
+            return 0;
+        }
+    }
+
+    private void sleep(long millis, CancellationToken token) throws IOException {
+        if (millis > 0) {
+            mClock.sleep(millis, token);
+        }
+    }
+
+    private CircuitBreaker breaker(String host) {
+        synchronized (mBreakers) {
+            CircuitBreaker breaker = mBreakers.get(host);
+            if (breaker == null) {
+                breaker = new CircuitBreaker();
+                mBreakers.put(host, breaker);
+            }
+            return breaker;
+        }
+    }
+
+    private RequestBudget budget(String key) {
+        synchronized (mBudgets) {
+            RequestBudget budget = mBudgets.get(key);
+            if (budget == null) {
+                budget = new RequestBudget(mClock.currentTimeMillis());
+                mBudgets.put(key, budget);
+            }
+            return budget;
+        }
+    }
+
+    /**
+     * Return the host of the given URL, or the URL itself if it has none.
+     */
+    private static String hostOf(String url) {
+        int hostStart = url.indexOf("://");
+        if (hostStart < 0) {
+            return url;
+        }
+        hostStart += 3;
+        int hostEnd = hostStart;
+        while (hostEnd < url.length() && "/?#".indexOf(url.charAt(hostEnd)) < 0) {
+            hostEnd++;
+        }
+        return url.substring(hostStart, hostEnd).toLowerCase(Locale.US);
+    }
+
+    /**
+     * Return the key whose budget the given URL uses: its host and API key.
+     */
+    private static String budgetKeyOf(String url) {
+        String apiKey = "";
+        int parameterStart = url.indexOf('?');
+        while (parameterStart >= 0) {
+            int parameterEnd = url.indexOf('&', parameterStart + 1);
+            String parameter = url.substring(parameterStart + 1,
+                    parameterEnd < 0 ? url.length() : parameterEnd);
+            if (parameter.startsWith("api-key=")) {
+                apiKey = parameter.substring("api-key=".length());
+                break;
+            }
+            parameterStart = parameterEnd;
+        }
+        return hostOf(url) + " " + apiKey;
+    }
+
+    /**
+     * Counts the failures of a host in a row. The circuit opens at the failure threshold or
+     * when the host asks for a pause with Retry-After. Once the open time is over, a single
+     * trial request is let through, which closes the circuit if it succeeds. Only the trial
+     * request itself ends the trial, a request let through before it does not.
+     */
+    private final class CircuitBreaker {
+
+        /* Answers of allowRequest */
+        static final int REJECTED = 0;
+        static final int ALLOWED = 1;
+        static final int TRIAL = 2;
+
+        private int mFailures;
+        private long mOpenUntilMillis;
+        private boolean mTrialRunning;
+
+        synchronized int allowRequest(long now) {
+            if (now < mOpenUntilMillis) {
+                return REJECTED;
+            }
+            if (mFailures < mFailureThreshold) {
+                return ALLOWED;
+            }
+            if (mTrialRunning) {
+                return REJECTED;
+            }
+            mTrialRunning = true;
+            return TRIAL;
+        }
+
+        synchronized boolean isOpen(long now) {
+            return now < mOpenUntilMillis || mFailures >= mFailureThreshold;
+        }
+
+        synchronized void onSuccess(boolean trial) {
+            mFailures = 0;
+            mOpenUntilMillis = 0;
+            endTrial(trial);
+        }
+
+        synchronized void onFailure(long now, long retryAfterMillis, boolean trial) {
+            mFailures++;
+            endTrial(trial);
+            if (mFailures >= mFailureThreshold) {
+                mOpenUntilMillis = Math.max(mOpenUntilMillis, now + mOpenMillis);
+                IngestLog.e(LOG_TAG, "Circuit opened after " + mFailures + " failures");
+            }
+            if (retryAfterMillis > 0) {
+                mOpenUntilMillis = Math.max(mOpenUntilMillis, now + retryAfterMillis);
+            }
+        }
+
+        /**
+         * The request that was let through has not been made.
+         */
+        synchronized void onCanceled(boolean trial) {
+            endTrial(trial);
+        }
+
+        private void endTrial(boolean trial) {
+            if (trial) {
+                mTrialRunning = false;
+            }
+        }
+    }
+
+    /**
+     * Token bucket of the requests of an API key. A request takes a token, and tokens come back
+     * at a steady rate up to the burst size. Tokens are reserved ahead, so the requests that
+     * have to wait get their turn in the order they came.
+     */
+    private final class RequestBudget {
+
+        private double mTokens;
+        private long mUpdatedMillis;
+
+        RequestBudget(long now) {
+            mTokens = mBudgetRequests;
+            mUpdatedMillis = now;
+        }
+
+        /**
+         * Take a token and return the time to wait until it is there, or a time longer than
+         * the longest wait, without taking a token, if the request should not wait that long.
+         */
+        synchronized long reserve(long now) {
+            if (now > mUpdatedMillis) {
+                mTokens = Math.min(mBudgetRequests,
+                        mTokens + (now - mUpdatedMillis) / (double) mBudgetRefillMillis);
+                mUpdatedMillis = now;
+            }
+            long wait = mTokens >= 1 ? 0 : (long) Math.ceil((1 - mTokens) * mBudgetRefillMillis);
+            if (wait <= mMaxBudgetWaitMillis) {
+                mTokens--;
+            }
+            return wait;
+        }
+    }
+}
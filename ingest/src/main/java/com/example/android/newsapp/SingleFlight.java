@@ -0,0 +1,172 @@
+package com.example.android.newsapp;
+
+import java.util.HashMap;
+
+/**
+ * Runs only one call at a time for each key. Callers that ask for a key whose call is still
+ * running wait for it and share its result instead of running the call again.
+ * <p>
+ * The result is only shared while the call runs. A caller that comes after the call has
+ * finished runs a new one, so caching the result is up to the caller.
+ * <p>
+ * Every caller has its own {@link CancellationToken}. A cancelled caller stops waiting right
+ * away, but the call itself is only cancelled once all of its callers are.
+ */
+final class SingleFlight<V> {
+
+    /**
+     * A call whose result may be shared with the callers of the same key.
+     */
+    abstract static class Call<V> {
+
+        /**
+         * Run the call, this is only done for the first caller of a key. The given token is
+         * cancelled when all callers are.
+         */
+        abstract V call(CancellationToken token);
+
+        /**
+         * Called instead of {@link #call} with the result of the call of another caller.
+         */
+        void onShared(V result) {
+        }
+    }
+
+    /* Calls that are running, by key */
+    private final HashMap<String, Flight> mFlights = new HashMap<>();
+
+    /* Number of callers that shared the result of another call */
+    private long mSharedCount;
+
+    /**
+     * Return the result of the given call, or of the running call of the given key.
+     * Return null if the given token is cancelled or the thread is interrupted while it waits
+     * for the running call.
+     */
+    V execute(String key, CancellationToken token, Call<V> call) {
+        final Flight flight;
+        boolean running;
+        synchronized (mFlights) {
+            Flight runningFlight = mFlights.get(key);
+            running = runningFlight != null;
+            if (running) {
+                flight = runningFlight;
+                mSharedCount++;
+            } else {
+                flight = new Flight(key);
+                mFlights.put(key, flight);
+            }
+            flight.mCallers++;
+        }
+        CancellationToken.Registration registration = token.addOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                flight.leave();
+            }
+        });
+
+        if (running) {
+            V result;
+            try {
+                result = flight.await(token);
+            } finally {
+                // A caller that stops waiting without being cancelled leaves the call as well
+                if (registration.unregister() && !flight.mDone) {
+                    flight.leave();
+                }
+            }
+            if (result != null) {
+                call.onShared(result);
+            }
+            return result;
+        }
+
+        V result = null;
+        try {
+            result = call.call(flight.mToken);
+            return result;
+        } finally {
+            synchronized (mFlights) {
+                if (mFlights.get(key) == flight) {
+                    mFlights.remove(key);
+                }
+            }
+            flight.finish(result);
+            registration.unregister();
+        }
+    }
+
+    /**
+     * Return the number of callers that shared the result of another call so far.
+     */
+    long getSharedCount() {
+        synchronized (mFlights) {
+            return mSharedCount;
+        }
+    }
+
+    /**
+     * A running call, its callers and its result.
+     */
+    private final class Flight {
+
+        private final String mKey;
+
+        /* Cancelled when all callers have been cancelled */
+        private final CancellationToken mToken = new CancellationToken();
+
+        /* Number of callers that have not been cancelled, guarded by mFlights */
+        private int mCallers;
+
+        private volatile boolean mDone;
+        private V mResult;
+
+        Flight(String key) {
+            mKey = key;
+        }
+
+        /**
+         * A caller has been cancelled. Once the last one is, the call is cancelled and no
+         * new caller joins it.
+         */
+        void leave() {
+            boolean abandoned;
+            synchronized (mFlights) {
+                mCallers--;
+                abandoned = mCallers == 0 && !mDone;
+                if (abandoned && mFlights.get(mKey) == this) {
+                    mFlights.remove(mKey);
+                }
+            }
+
+            // Wake up the cancelled caller if it is waiting
+            synchronized (this) {
+                notifyAll();
+            }
+            if (abandoned) {
+                mToken.cancel();
+            }
+        }
+
+        synchronized void finish(V result) {
+            mResult = result;
+            mDone = true;
+            notifyAll();
+        }
+
+        /**
+         * Wait for the result, or return null once the given token is cancelled.
+         */
+        synchronized V await(CancellationToken token) {
+            try {
+                while (!mDone && !token.isCanceled()) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return mDone ? mResult : null;
+        }
+    }
+}
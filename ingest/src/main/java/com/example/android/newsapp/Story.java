@@ -0,0 +1,118 @@
+package com.example.android.newsapp;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An {@link Story} object contains information related to a single story.
+ */
+public class Story {
+
+    /* Story Title */
+    private String mTitle;
+
+    /* Story Authors, shared with the other stories of the same byline */
+    private String[] mAuthors;
+
+    /* Story Date in epoch milliseconds, StoryDateCodec.NO_DATE if unknown */
+    private long mTimeInMillis;
+
+    /* Story Date formatted for display, built on first use */
+    private String mDisplayDate;
+
+    /* Story Url */
+    private String mUrl;
+
+    /* Story Section id, as used in queries, may be null */
+    private String mSectionId;
+
+    /* Story Section */
+    private String mSection;
+
+    /* Story Image Url */
+    private String mThumbnailUrl;
+
+    /**
+     * Constructs a new {@link Story} object.
+     *
+     * @param title    is the mTitle of the story
+     * @param authors  are the authors of the story, the array must not be modified
+     * @param timeInMillis is the date of the story in epoch milliseconds
+     * @param url      is the website URL to find out more about the story
+     * @param sectionId is the id of the section of the story
+     * @param section  is the section of the story
+     * @param thumbnailUrl is the url of the story image
+     */
+
+    public Story(String title, String[] authors, long timeInMillis, String url, String sectionId, String section, String thumbnailUrl) {
+        this.mTitle = title;
+        this.mAuthors = authors;
+        this.mTimeInMillis = timeInMillis;
+        this.mUrl = url;
+        this.mSectionId = sectionId;
+        this.mSection = section;
+        this.mThumbnailUrl = thumbnailUrl;
+    }
+
+    /* Getter Methods */
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public long getTimeInMillis() {
+        return mTimeInMillis;
+    }
+
+    public boolean hasDate() {
+        return mTimeInMillis != StoryDateCodec.NO_DATE;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /* Returns the authors as a fixed size list that must not be modified */
+    public List<String> getAuthors() {
+        return Arrays.asList(mAuthors);
+    }
+
+    public int getAuthorCount() {
+        return mAuthors.length;
+    }
+
+    public String getSectionId() {
+        return mSectionId;
+    }
+
+    public String getSection() {
+        return mSection;
+    }
+
+    public String getThumnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    /* Helper method to return the date formatted for display, or null if it is unknown */
+    public String getDisplayDate() {
+        if (mDisplayDate == null && hasDate()) {
+            mDisplayDate = StoryDateCodec.formatDisplayDate(mTimeInMillis);
+        }
+        return mDisplayDate;
+    }
+
+    /* Helper method to return all authors in one string */
+    public String getAuthorsAsString(){
+        StringBuilder builder = new StringBuilder();
+        if (mAuthors.length == 0) {
+            return "";
+        }
+
+        for (String author : mAuthors){
+            builder.append(author);
+            builder.append(", ");
+        }
+        builder.delete(builder.length() - 2, builder.length() - 1);
+        return builder.toString();
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,249 @@
+package com.example.android.newsapp;
+
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parses and formats the dates of a {@link Story} without any {@link java.text.SimpleDateFormat}.
+ * <p>
+ * The guardian publication date {@code yyyy-MM-dd'T'HH:mm:ss'Z'} is in UTC and is parsed into
+ * epoch milliseconds. The display date {@code dd. MMM, yyyy} is formatted in the time zone and
+ * with the month names of the device. All methods are thread safe.
+ */
+public final class StoryDateCodec {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = StoryDateCodec.class.getSimpleName();
+
+    /**
+     * Value for a missing or malformed date
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Length of a publication date like "2017-07-03T13:58:27Z"
+     */
+    private static final int PUBLICATION_DATE_LENGTH = 20;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * MILLIS_PER_SECOND;
+
+    /**
+     * Short month names of the locale they were last looked up for
+     */
+    private static volatile MonthNames sMonthNames;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link StoryDateCodec} object.
+     */
+    private StoryDateCodec() {
+    }
+
+    /**
+     * Parse the publication date of a story into epoch milliseconds, or return {@link #NO_DATE}
+     * if it is malformed.
+     */
+    public static long parsePublicationDate(String publicationDate) {
+        if (publicationDate == null
+                || publicationDate.length() != PUBLICATION_DATE_LENGTH
+                || publicationDate.charAt(4) != '-'
+                || publicationDate.charAt(7) != '-'
+                || publicationDate.charAt(10) != 'T'
+                || publicationDate.charAt(13) != ':'
+                || publicationDate.charAt(16) != ':'
+                || publicationDate.charAt(19) != 'Z') {
+            IngestLog.e(LOG_TAG, "Error getting publication date: " + publicationDate);
+            return NO_DATE;
+        }
+
+        int year = digits(publicationDate, 0, 4);
+        int month = digits(publicationDate, 5, 2);
+        int day = digits(publicationDate, 8, 2);
+        int hour = digits(publicationDate, 11, 2);
+        int minute = digits(publicationDate, 14, 2);
+        int second = digits(publicationDate, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) {
+            IngestLog.e(LOG_TAG, "Error getting publication date: " + publicationDate);
+            return NO_DATE;
+        }
+
+        long seconds = ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60 + second;
+        return seconds * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Parse a query date like "2017-07-03" into the epoch milliseconds of the last millisecond
+     * of that day in UTC, or return {@link #NO_DATE} if it is malformed.
+     */
+    public static long parseEndOfDay(String queryDate) {
+        if (queryDate == null
+                || queryDate.length() != 10
+                || queryDate.charAt(4) != '-'
+                || queryDate.charAt(7) != '-') {
+            return NO_DATE;
+        }
+
+        int year = digits(queryDate, 0, 4);
+        int month = digits(queryDate, 5, 2);
+        int day = digits(queryDate, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return NO_DATE;
+        }
+        return (daysFromCivil(year, month, day) + 1) * MILLIS_PER_DAY - 1;
+    }
+
+    /**
+     * Parse a query date like "2017-07-03" into the epoch milliseconds of the first millisecond
+     * of that day in UTC, or return {@link #NO_DATE} if it is malformed.
+     */
+    public static long parseStartOfDay(String queryDate) {
+        long endOfDay = parseEndOfDay(queryDate);
+        return endOfDay == NO_DATE ? NO_DATE : endOfDay - MILLIS_PER_DAY + 1;
+    }
+
+    /**
+     * Return the formatted date string (i.e. "03. Mar, 1984") for the given epoch milliseconds.
+     */
+    public static String formatDisplayDate(long timeInMillis) {
+        // Shift the instant into the time zone of the device
+        long localMillis = timeInMillis + TimeZone.getDefault().getOffset(timeInMillis);
+        long date = civilFromDays(floorDiv(localMillis, MILLIS_PER_DAY));
+        long year = date / 10000;
+        int month = (int) (date / 100 % 100);
+        int day = (int) (date % 100);
+
+        StringBuilder builder = new StringBuilder(16);
+        if (day < 10) {
+            builder.append('0');
+        }
+        builder.append(day).append(". ").append(monthName(month)).append(", ");
+        appendYear(builder, year);
+        return builder.toString();
+    }
+
+    /**
+     * Return the query date (i.e. "1984-03-03") of the UTC day of the given epoch milliseconds.
+     */
+    public static String formatQueryDate(long timeInMillis) {
+        long date = civilFromDays(floorDiv(timeInMillis, MILLIS_PER_DAY));
+        long month = date / 100 % 100;
+        long day = date % 100;
+        StringBuilder builder = new StringBuilder(10);
+        appendYear(builder, date / 10000);
+        builder.append(month < 10 ? "-0" : "-").append(month);
+        builder.append(day < 10 ? "-0" : "-").append(day);
+        return builder.toString();
+    }
+
+    /**
+     * Convert the given days since the epoch into the date of the proleptic gregorian calendar,
+     * packed as year * 10000 + month * 100 + day so nothing is allocated. Only for years after 0.
+     */
+    private static long civilFromDays(long days) {
+        long shifted = days + 719468;
+        long era = floorDiv(shifted, 146097);
+        long dayOfEra = shifted - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * Return the largest whole number that is not more than the given quotient, which is what
+     * Math.floorDiv does from Java 8 on.
+     */
+    static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if ((dividend % divisor != 0) && ((dividend < 0) != (divisor < 0))) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    /* Append the year with at least four digits */
+    private static void appendYear(StringBuilder builder, long year) {
+        for (long pad = 1000; pad > 1 && year < pad; pad /= 10) {
+            builder.append('0');
+        }
+        builder.append(year);
+    }
+
+    /**
+     * Return the number of days from 1970-01-01 to the given date of the proleptic
+     * gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+        int yearOfEra = shiftedYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leapYear ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Return the decimal number of the given characters, or -1 if one of them is not a digit.
+     */
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Return the short name of the given month, starting at 1, in the locale of the device.
+     */
+    private static String monthName(int month) {
+        Locale locale = Locale.getDefault();
+        MonthNames monthNames = sMonthNames;
+        if (monthNames == null || !monthNames.mLocale.equals(locale)) {
+            monthNames = new MonthNames(locale);
+            sMonthNames = monthNames;
+        }
+        return monthNames.mNames[month - 1];
+    }
+
+    /**
+     * Short month names of a locale.
+     */
+    private static final class MonthNames {
+
+        private final Locale mLocale;
+        private final String[] mNames;
+
+        MonthNames(Locale locale) {
+            mLocale = locale;
+            mNames = DateFormatSymbols.getInstance(locale).getShortMonths();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.android.newsapp;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process wide dictionary of the section and author names of the parsed stories.
+ * <p>
+ * A feed of hundreds of stories has only a dozen sections and a few recurring columnists. The
+ * parsers hand every section and author name to the dictionary, which returns the one instance
+ * it already holds, so the stories share their names instead of keeping a copy each. Stories
+ * with the same byline share the same author array as well.
+ * <p>
+ * The dictionary is bounded, the least recently used names are dropped first. It counts the
+ * heap bytes that the shared names saved. All methods are thread safe.
+ */
+public final class StoryDictionary {
+
+    /**
+     * Maximum number of names and of bylines that are kept
+     */
+    private static final int MAX_NAMES = 4096;
+    private static final int MAX_BYLINES = 2048;
+
+    /**
+     * Approximate heap overhead of an object header plus its reference fields
+     */
+    private static final int OBJECT_OVERHEAD_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    /**
+     * Authors of a story without any
+     */
+    public static final String[] NO_AUTHORS = new String[0];
+
+    private static StoryDictionary sInstance;
+
+    /* Set to false to let every story keep its own names, for example to compare heap sizes */
+    private static volatile boolean sEnabled = true;
+
+    private final LinkedHashMap<String, String> mNames;
+
+    /* Shared author arrays, by their authors */
+    private final LinkedHashMap<List<String>, String[]> mBylines;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+    private long mSavedBytes;
+
+    private StoryDictionary(final int maxNames, final int maxBylines) {
+        mNames = new LinkedHashMap<String, String>(maxNames / 4, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return evict(size() > maxNames);
+            }
+        };
+        mBylines = new LinkedHashMap<List<String>, String[]>(maxBylines / 4, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, String[]> eldest) {
+                return evict(size() > maxBylines);
+            }
+        };
+    }
+
+    /**
+     * Return the process wide {@link StoryDictionary}.
+     */
+    public static synchronized StoryDictionary getInstance() {
+        if (sInstance == null) {
+            sInstance = new StoryDictionary(MAX_NAMES, MAX_BYLINES);
+        }
+        return sInstance;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Return the shared instance of the given section or author name.
+     */
+    public synchronized String name(String name) {
+        if (name == null || !sEnabled) {
+            return name;
+        }
+        String shared = mNames.get(name);
+        if (shared == null) {
+            mMissCount++;
+            mNames.put(name, name);
+            return name;
+        }
+        mHitCount++;
+        if (shared != name) {
+            mSavedBytes += sizeOf(name);
+        }
+        return shared;
+    }
+
+    /**
+     * Return the shared array of the given authors, with shared names. The array must not be
+     * modified.
+     */
+    public synchronized String[] authors(List<String> authors) {
+        if (authors.isEmpty()) {
+            return NO_AUTHORS;
+        }
+        if (!sEnabled) {
+            return authors.toArray(new String[authors.size()]);
+        }
+        String[] shared = mBylines.get(authors);
+        if (shared != null) {
+            mHitCount++;
+            mSavedBytes += OBJECT_OVERHEAD_BYTES + authors.size() * REFERENCE_BYTES;
+            for (int i = 0; i < shared.length; i++) {
+                // Keep the names of the byline from being dropped first
+                String author = authors.get(i);
+                mNames.get(author);
+                if (shared[i] != author) {
+                    mSavedBytes += sizeOf(author);
+                }
+            }
+            return shared;
+        }
+
+        String[] names = new String[authors.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = name(authors.get(i));
+        }
+        mBylines.put(Arrays.asList(names), names);
+        return names;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Return the approximate number of heap bytes that the stories did not have to keep because
+     * they share their names.
+     */
+    public synchronized long getSavedBytes() {
+        return mSavedBytes;
+    }
+
+    /**
+     * Drop all names, the stories that share them keep them.
+     */
+    public synchronized void clear() {
+        mNames.clear();
+        mBylines.clear();
+    }
+
+    /* Called by the maps under the lock of the dictionary */
+    private boolean evict(boolean full) {
+        if (full) {
+            mEvictionCount++;
+        }
+        return full;
+    }
+
+    private static int sizeOf(String value) {
+        return OBJECT_OVERHEAD_BYTES * 2 + value.length() * 2;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.newsapp;
+
+import java.util.List;
+
+/**
+ * An {@link StoryPage} object contains the stories of one page of a guardian search response
+ * together with the paging information of the response.
+ */
+public class StoryPage {
+
+    /* Stories of this page */
+    private final List<Story> mStories;
+
+    /* Number of this page, starting at 1 */
+    private final int mCurrentPage;
+
+    /* Total number of pages of the query */
+    private final int mPages;
+
+    /* Validators of the response for conditional requests, may be null */
+    private final String mETag;
+    private final String mLastModified;
+
+    /**
+     * Constructs a new {@link StoryPage} object.
+     *
+     * @param stories     are the stories of this page
+     * @param currentPage is the number of this page
+     * @param pages       is the total number of pages
+     */
+    public StoryPage(List<Story> stories, int currentPage, int pages) {
+        this(stories, currentPage, pages, null, null);
+    }
+
+    /**
+     * Constructs a new {@link StoryPage} object with the validators of its response.
+     *
+     * @param stories      are the stories of this page
+     * @param currentPage  is the number of this page
+     * @param pages        is the total number of pages
+     * @param eTag         is the ETag header of the response
+     * @param lastModified is the Last-Modified header of the response
+     */
+    public StoryPage(List<Story> stories, int currentPage, int pages, String eTag,
+                     String lastModified) {
+        this.mStories = stories;
+        this.mCurrentPage = currentPage;
+        this.mPages = pages;
+        this.mETag = eTag;
+        this.mLastModified = lastModified;
+    }
+
+    /* Getter Methods */
+    public List<Story> getStories() {
+        return mStories;
+    }
+
+    public int getCurrentPage() {
+        return mCurrentPage;
+    }
+
+    public int getPages() {
+        return mPages;
+    }
+
+    public String getETag() {
+        return mETag;
+    }
+
+    public String getLastModified() {
+        return mLastModified;
+    }
+
+    /* Helper method to check if the query has more pages after this one */
+    public boolean hasNextPage() {
+        return mCurrentPage < mPages;
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compact binary format of a {@link StoryPage}, used to restore stories without parsing JSON.
+ * <p>
+ * A snapshot starts with the magic bytes "NSNP" and a version byte, followed by the paging
+ * information and validators of the page. Section names and author names repeat a lot, so they
+ * are written once into a string table that the stories refer to by index. Then comes the
+ * number of stories, a table with the offset of every story and the stories themselves, so a
+ * {@link Reader} can decode a single story without decoding the ones before it.
+ * <p>
+ * Numbers are written as unsigned varints, 7 bits per byte with the high bit set on all but the
+ * last byte. The date of a story is written as a zigzag varint of its epoch seconds, the
+ * guardian does not publish dates with a finer resolution.
+ */
+public final class StorySnapshot {
+
+    /**
+     * Version of the format, a snapshot of another version is not read
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'N', 'S', 'N', 'P'};
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* Reference to a missing string, the references to the string table start at 1 */
+    private static final int NO_STRING = 0;
+
+    /* Varint of a missing date, the dates start at 1 */
+    private static final int NO_DATE = 0;
+
+    /* Length of an entry of the offset table */
+    private static final int OFFSET_BYTES = 4;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link StorySnapshot} object.
+     */
+    private StorySnapshot() {
+    }
+
+    /**
+     * Return the snapshot of the given page.
+     */
+    public static byte[] write(StoryPage storyPage) {
+        List<Story> stories = storyPage.getStories();
+
+        // Collect the section and author names into the string table
+        HashMap<String, Integer> stringIndexes = new HashMap<>();
+        ArrayList<String> strings = new ArrayList<>();
+        SnapshotBuffer records = new SnapshotBuffer(stories.size() * 192);
+        int[] offsets = new int[stories.size()];
+        for (int i = 0; i < stories.size(); i++) {
+            Story story = stories.get(i);
+            offsets[i] = records.size();
+            records.writeString(story.getTitle());
+            List<String> authors = story.getAuthors();
+            int authorCount = authors != null ? authors.size() : 0;
+            records.writeVarint(authorCount);
+            for (int j = 0; j < authorCount; j++) {
+                records.writeVarint(stringReference(authors.get(j), stringIndexes, strings));
+            }
+            if (story.hasDate()) {
+                long seconds = StoryDateCodec.floorDiv(story.getTimeInMillis(),
+                        MILLIS_PER_SECOND);
+                records.writeVarint(((seconds << 1) ^ (seconds >> 63)) + 1);
+            } else {
+                records.writeVarint(NO_DATE);
+            }
+            records.writeString(story.getUrl());
+            records.writeVarint(stringReference(story.getSectionId(), stringIndexes, strings));
+            records.writeVarint(stringReference(story.getSection(), stringIndexes, strings));
+            records.writeString(story.getThumnailUrl());
+        }
+
+        SnapshotBuffer snapshot = new SnapshotBuffer(records.size() + strings.size() * 24 + 64);
+        snapshot.write(MAGIC, 0, MAGIC.length);
+        snapshot.writeByte(VERSION);
+        snapshot.writeVarint(storyPage.getCurrentPage());
+        snapshot.writeVarint(storyPage.getPages());
+        snapshot.writeString(storyPage.getETag());
+        snapshot.writeString(storyPage.getLastModified());
+        snapshot.writeVarint(strings.size());
+        for (String string : strings) {
+            snapshot.writeString(string);
+        }
+        snapshot.writeVarint(offsets.length);
+        for (int offset : offsets) {
+            snapshot.writeFixedInt(offset);
+        }
+        snapshot.write(records.array(), 0, records.size());
+        return snapshot.toByteArray();
+    }
+
+    /**
+     * Return all stories of the given snapshot.
+     *
+     * @throws IOException if the snapshot is malformed or of another version
+     */
+    public static StoryPage read(byte[] snapshot) throws IOException {
+        return new Reader(snapshot).readPage();
+    }
+
+    /**
+     * Return the reference of the given string, adding it to the string table if it is new.
+     */
+    private static int stringReference(String string, HashMap<String, Integer> stringIndexes,
+                                       ArrayList<String> strings) {
+        if (string == null) {
+            return NO_STRING;
+        }
+        Integer index = stringIndexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            stringIndexes.put(string, index);
+            strings.add(string);
+        }
+        return index + 1;
+    }
+
+    /**
+     * Reads the stories of a snapshot, one at a time and only when they are asked for.
+     * <p>
+     * The header, the string table offsets and the story offsets are read up front. The strings
+     * of the table are decoded on first use and shared through the {@link StoryDictionary}, so
+     * every section and author name is only one {@link String}. A reader is not thread safe.
+     */
+    public static final class Reader {
+
+        private final byte[] mData;
+        private final int mCurrentPage;
+        private final int mPages;
+        private final String mETag;
+        private final String mLastModified;
+
+        /* Offsets of the strings of the table, decoded ones are kept in mStrings */
+        private final int[] mStringOffsets;
+        private final String[] mStrings;
+
+        /* Offsets of the stories */
+        private final int mOffsetTable;
+        private final int mRecords;
+        private final int mStoryCount;
+
+        /* Shares the names with the stories that have been parsed */
+        private final StoryDictionary mDictionary = StoryDictionary.getInstance();
+
+        /* Position of the next byte to read */
+        private int mPosition;
+
+        /**
+         * Constructs a new {@link Reader} of the given snapshot.
+         *
+         * @throws IOException if the snapshot is malformed or of another version
+         */
+        public Reader(byte[] data) throws IOException {
+            mData = data;
+            if (data.length < MAGIC.length + 1
+                    || !Arrays.equals(MAGIC, Arrays.copyOf(data, MAGIC.length))) {
+                throw new IOException("Not a story snapshot");
+            }
+            mPosition = MAGIC.length;
+            int version = readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported story snapshot version " + version);
+            }
+
+            mCurrentPage = readInt();
+            mPages = readInt();
+            mETag = readString();
+            mLastModified = readString();
+
+            // Skip over the strings of the table, they are decoded when they are needed
+            int stringCount = readCount(1);
+            mStringOffsets = new int[stringCount];
+            mStrings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                mStringOffsets[i] = mPosition;
+                skipString();
+            }
+
+            mStoryCount = readCount(OFFSET_BYTES);
+            mOffsetTable = mPosition;
+            mRecords = mOffsetTable + mStoryCount * OFFSET_BYTES;
+            if (mRecords > data.length) {
+                throw new IOException("Truncated story snapshot");
+            }
+        }
+
+        public int getStoryCount() {
+            return mStoryCount;
+        }
+
+        /**
+         * Return the story at the given index, decoding only that story.
+         *
+         * @throws IOException if the story is malformed
+         */
+        public Story getStory(int index) throws IOException {
+            if (index < 0 || index >= mStoryCount) {
+                throw new IndexOutOfBoundsException("Story " + index + " of " + mStoryCount);
+            }
+            mPosition = mOffsetTable + index * OFFSET_BYTES;
+            mPosition = mRecords + readFixedInt();
+            if (mPosition < mRecords || mPosition >= mData.length) {
+                throw new IOException("Bad offset of story " + index);
+            }
+
+            String title = readString();
+            int authorCount = readCount(1);
+            String[] authors = new String[authorCount];
+            for (int i = 0; i < authorCount; i++) {
+                authors[i] = readStringReference();
+            }
+            long date = readVarint();
+            long timeInMillis = StoryDateCodec.NO_DATE;
+            if (date != NO_DATE) {
+                long zigzag = date - 1;
+                timeInMillis = ((zigzag >>> 1) ^ -(zigzag & 1)) * MILLIS_PER_SECOND;
+            }
+            String url = readString();
+            String sectionId = readStringReference();
+            String section = readStringReference();
+            String thumbnailUrl = readString();
+            return new Story(title, mDictionary.authors(Arrays.asList(authors)), timeInMillis, url,
+                    sectionId, section, thumbnailUrl);
+        }
+
+        /**
+         * Return the page with all of its stories.
+         *
+         * @throws IOException if a story is malformed
+         */
+        public StoryPage readPage() throws IOException {
+            ArrayList<Story> stories = new ArrayList<>(mStoryCount);
+            for (int i = 0; i < mStoryCount; i++) {
+                stories.add(getStory(i));
+            }
+            return new StoryPage(stories, mCurrentPage, mPages, mETag, mLastModified);
+        }
+
+        private String readStringReference() throws IOException {
+            int reference = readInt();
+            if (reference == NO_STRING) {
+                return null;
+            }
+            int index = reference - 1;
+            if (index < 0 || index >= mStrings.length) {
+                throw new IOException("Bad string reference " + reference);
+            }
+            if (mStrings[index] == null) {
+                int position = mPosition;
+                mPosition = mStringOffsets[index];
+                mStrings[index] = mDictionary.name(readString());
+                mPosition = position;
+            }
+            return mStrings[index];
+        }
+
+        /* Strings are written as their length in bytes plus one, 0 for a missing string */
+        private String readString() throws IOException {
+            int length = readInt();
+            if (length == 0) {
+                return null;
+            }
+            length--;
+            checkAvailable(length);
+            String string = new String(mData, mPosition, length, UTF_8);
+            mPosition += length;
+            return string;
+        }
+
+        private void skipString() throws IOException {
+            int length = readInt();
+            if (length > 0) {
+                checkAvailable(length - 1);
+                mPosition += length - 1;
+            }
+        }
+
+        /**
+         * Read a count of items that take at least the given number of bytes each, so a corrupt
+         * count does not allocate more than the snapshot could hold.
+         */
+        private int readCount(int minItemBytes) throws IOException {
+            int count = readInt();
+            checkAvailable((long) count * minItemBytes);
+            return count;
+        }
+
+        private int readInt() throws IOException {
+            // A varint of ten bytes sets the sign bit, the numbers written are never negative
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Number out of range at " + mPosition);
+            }
+            return (int) value;
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint at " + mPosition);
+        }
+
+        private int readFixedInt() throws IOException {
+            checkAvailable(OFFSET_BYTES);
+            int value = (mData[mPosition] & 0xff) << 24
+                    | (mData[mPosition + 1] & 0xff) << 16
+                    | (mData[mPosition + 2] & 0xff) << 8
+                    | (mData[mPosition + 3] & 0xff);
+            mPosition += OFFSET_BYTES;
+            return value;
+        }
+
+        private int readByte() throws IOException {
+            checkAvailable(1);
+            return mData[mPosition++] & 0xff;
+        }
+
+        private void checkAvailable(long count) throws IOException {
+            if (count < 0 || mPosition + count > mData.length) {
+                throw new IOException("Truncated story snapshot");
+            }
+        }
+    }
+
+    /**
+     * Growable byte array with the encodings of the format, {@link java.io.ByteArrayOutputStream}
+     * without the synchronization and the copy of {@code toByteArray()} for the records.
+     */
+    private static final class SnapshotBuffer {
+
+        private byte[] mBytes;
+        private int mSize;
+
+        SnapshotBuffer(int capacity) {
+            mBytes = new byte[Math.max(capacity, 16)];
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        byte[] array() {
+            return mBytes;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBytes, mSize);
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            mBytes[mSize++] = (byte) b;
+        }
+
+        void write(byte[] bytes, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(bytes, offset, mBytes, mSize, count);
+            mSize += count;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7fL) != 0) {
+                mBytes[mSize++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            mBytes[mSize++] = (byte) value;
+        }
+
+        void writeFixedInt(int value) {
+            ensureCapacity(OFFSET_BYTES);
+            mBytes[mSize++] = (byte) (value >>> 24);
+            mBytes[mSize++] = (byte) (value >>> 16);
+            mBytes[mSize++] = (byte) (value >>> 8);
+            mBytes[mSize++] = (byte) value;
+        }
+
+        void writeString(String string) {
+            if (string == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = string.getBytes(UTF_8);
+            writeVarint(bytes.length + 1);
+            write(bytes, 0, bytes.length);
+        }
+
+        private void ensureCapacity(int count) {
+            if (mSize + count > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(mBytes.length * 2, mSize + count));
+            }
+        }
+    }
+}
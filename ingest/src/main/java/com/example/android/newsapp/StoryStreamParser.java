@@ -0,0 +1,284 @@
+package com.example.android.newsapp;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Token based parser for the guardian search response.
+ * <p>
+ * Unlike {@link QueryUtils}' tree based parser it never holds the whole response in memory:
+ * it reads straight from the connection's {@link InputStream} and hands out every {@link Story}
+ * as soon as its element of {@code response.results} has been read.
+ */
+final class StoryStreamParser {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = StoryStreamParser.class.getSimpleName();
+
+    /**
+     * Status when JSON response is ok
+     */
+    private static final String JSON_STATUS_OK = "ok";
+
+    /**
+     * Receives every {@link Story} as soon as it has been parsed.
+     */
+    interface OnStoryParsedListener {
+        void onStoryParsed(Story story);
+    }
+
+    /* Listener for parsed stories, may be null */
+    private final OnStoryParsedListener mListener;
+
+    /* Token that stops the parse between two stories */
+    private final CancellationToken mToken;
+
+    /* All stories handed out so far */
+    private final ArrayList<Story> mStories = new ArrayList<>();
+
+    /* Stories read before the status of the response was known */
+    private final ArrayList<Story> mPendingStories = new ArrayList<>();
+
+    /* Authors of the story being read, reused for every story */
+    private final ArrayList<String> mAuthors = new ArrayList<>();
+
+    /* Shares the section and author names between the stories */
+    private final StoryDictionary mDictionary = StoryDictionary.getInstance();
+
+    /* Status of the response, null as long as it has not been read */
+    private String mStatus;
+
+    /* Paging information of the response */
+    private int mCurrentPage;
+    private int mPages;
+
+    private StoryStreamParser(OnStoryParsedListener listener, CancellationToken token) {
+        mListener = listener;
+        mToken = token;
+    }
+
+    /**
+     * Return a {@link StoryPage} with the {@link Story} objects read from the given JSON stream,
+     * or null if the stream is empty. The listener, if any, is called for every story as soon as
+     * it is read.
+     */
+    static StoryPage parse(InputStream inputStream, OnStoryParsedListener listener)
+            throws IOException {
+        return parse(inputStream, listener, new CancellationToken());
+    }
+
+    /**
+     * Like {@link #parse(InputStream, OnStoryParsedListener)}, but stops with an
+     * {@link java.io.InterruptedIOException} as soon as the given token is cancelled.
+     */
+    static StoryPage parse(InputStream inputStream, OnStoryParsedListener listener,
+                           CancellationToken token) throws IOException {
+        if (inputStream == null) {
+            return null;
+        }
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            StoryStreamParser parser = new StoryStreamParser(listener, token);
+            try {
+                // An empty body is handled like an empty response string by the legacy parser,
+                // a body that is no JSON at all, like an HTML error page, like any other
+                // malformed one
+                try {
+                    reader.peek();
+                } catch (EOFException e) {
+                    return null;
+                }
+                parser.readRoot(reader);
+            } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+                // Keep the stories read so far, just like the legacy parser does on a
+                // JSONException, but only if an ok status came before them. Stories still
+                // waiting for the status, like those of a body cut off before it, are dropped.
+                IngestLog.e(LOG_TAG, "Problem parsing the story JSON results", e);
+            }
+            return parser.toStoryPage();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void readRoot(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("response")) {
+                readResponse(reader);
+                return;
+            }
+            reader.skipValue();
+        }
+        throw new MalformedJsonException("No value for response");
+    }
+
+    private void readResponse(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("status")) {
+                mStatus = reader.nextString();
+                if (!JSON_STATUS_OK.equals(mStatus)) {
+                    IngestLog.e(LOG_TAG, "Bad status of json response");
+                    mPendingStories.clear();
+                    mCurrentPage = 0;
+                    mPages = 0;
+                    return;
+                }
+                // The results came before the status, hand them out now
+                for (Story story : mPendingStories) {
+                    deliver(story);
+                }
+                mPendingStories.clear();
+            } else if (name.equals("currentPage")) {
+                mCurrentPage = reader.nextInt();
+            } else if (name.equals("pages")) {
+                mPages = reader.nextInt();
+            } else if (name.equals("results")) {
+                readResults(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (mStatus == null) {
+            throw new MalformedJsonException("No value for status");
+        }
+    }
+
+    private void readResults(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            mToken.throwIfCanceled();
+            Story story = readStory(reader);
+            if (mStatus == null) {
+                mPendingStories.add(story);
+            } else {
+                deliver(story);
+            }
+        }
+        reader.endArray();
+    }
+
+    private Story readStory(JsonReader reader) throws IOException {
+        String title = null;
+        String publicationDate = null;
+        String storyUrl = null;
+        String sectionId = null;
+        String section = null;
+        String thumbnailUrl = null;
+        mAuthors.clear();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "webTitle":
+                    title = reader.nextString();
+                    break;
+                case "webPublicationDate":
+                    publicationDate = reader.nextString();
+                    break;
+                case "webUrl":
+                    storyUrl = reader.nextString();
+                    break;
+                case "sectionId":
+                    sectionId = reader.nextString();
+                    break;
+                case "sectionName":
+                    section = reader.nextString();
+                    break;
+                case "fields":
+                    thumbnailUrl = readThumbnail(reader);
+                    break;
+                case "tags":
+                    readAuthors(reader, mAuthors);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        // The same fields are mandatory for the legacy parser
+        if (title == null) {
+            throw new MalformedJsonException("No value for webTitle");
+        }
+        if (publicationDate == null) {
+            throw new MalformedJsonException("No value for webPublicationDate");
+        }
+        if (storyUrl == null) {
+            throw new MalformedJsonException("No value for webUrl");
+        }
+        if (section == null) {
+            throw new MalformedJsonException("No value for sectionName");
+        }
+
+        long timeInMillis = StoryDateCodec.parsePublicationDate(publicationDate);
+        return new Story(title, mDictionary.authors(mAuthors), timeInMillis, storyUrl,
+                mDictionary.name(sectionId), mDictionary.name(section), thumbnailUrl);
+    }
+
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnailUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("thumbnail") && reader.peek() != JsonToken.NULL) {
+                thumbnailUrl = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnailUrl;
+    }
+
+    private static void readAuthors(JsonReader reader, ArrayList<String> authors) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("webTitle") && reader.peek() != JsonToken.NULL) {
+                    authors.add(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private StoryPage toStoryPage() {
+        // Without an ok status there are no stories, the pending ones are never delivered
+        if (!JSON_STATUS_OK.equals(mStatus)) {
+            return new StoryPage(mStories, 0, 0);
+        }
+        return new StoryPage(mStories, mCurrentPage, mPages);
+    }
+
+    private void deliver(Story story) {
+        mStories.add(story);
+        if (mListener != null) {
+            mListener.onStoryParsed(story);
+        }
+    }
+}
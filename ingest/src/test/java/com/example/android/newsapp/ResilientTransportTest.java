@@ -0,0 +1,483 @@
+package com.example.android.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the fetch policy of {@link ResilientTransport} against a scripted transport and a
+ * clock that only moves when the policy waits.
+ */
+public class ResilientTransportTest {
+
+    private static final String URL = "https://content.guardianapis.com/search?api-key=test";
+    private static final String OTHER_KEY_URL =
+            "https://content.guardianapis.com/search?api-key=other";
+
+    private static final long BASE_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 8000;
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long OPEN_MILLIS = 30000;
+
+    private FakeClock mClock;
+    private ScriptedTransport mTransport;
+    private FixedRandom mRandom;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock(1500000000000L);
+        mTransport = new ScriptedTransport(mClock);
+        mRandom = new FixedRandom(0.5);
+    }
+
+    @Test
+    public void retryAfterInSecondsIsWaited() throws IOException {
+        mTransport.respond(503, "Retry-After", "2");
+        mTransport.respond(200);
+
+        HttpTransport.Response response = transport(3).get(URL, noHeaders(), token());
+
+        assertEquals(200, response.getCode());
+        assertEquals(Collections.singletonList(2000L), mClock.mSleeps);
+        assertEquals(2, mTransport.mRequestTimes.size());
+        assertTrue(mTransport.mResponses.isEmpty());
+    }
+
+    @Test
+    public void retryAfterAsHttpDateIsWaited() throws IOException {
+        SimpleDateFormat httpDate =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        mTransport.respond(429, "Retry-After",
+                httpDate.format(new Date(mClock.mNow + 3000)));
+        mTransport.respond(200);
+
+        HttpTransport.Response response = transport(3).get(URL, noHeaders(), token());
+
+        assertEquals(200, response.getCode());
+        assertEquals(Collections.singletonList(3000L), mClock.mSleeps);
+    }
+
+    @Test
+    public void retryAfterBeyondMaxBackoffReturnsResponse() throws IOException {
+        mTransport.respond(503, "Retry-After", "60");
+
+        HttpTransport.Response response = transport(3).get(URL, noHeaders(), token());
+
+        assertEquals(503, response.getCode());
+        assertTrue(mClock.mSleeps.isEmpty());
+        assertEquals(1, mTransport.mRequestTimes.size());
+    }
+
+    @Test
+    public void shortRetryAfterWaitsAtLeastTheBackoff() throws IOException {
+        mRandom = new FixedRandom(0);
+        mTransport.respond(503, "Retry-After", "0");
+        mTransport.respond(200);
+
+        transport(3).get(URL, noHeaders(), token());
+
+        assertEquals(Collections.singletonList(BASE_BACKOFF_MILLIS / 2), mClock.mSleeps);
+    }
+
+    @Test
+    public void backoffDoublesWithJitterWithinBounds() {
+        Random random = new Random(42);
+        ResilientTransport transport = new ResilientTransport(mTransport, mClock, random, 3,
+                BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS, FAILURE_THRESHOLD, OPEN_MILLIS, 5,
+                1000, 5000);
+        for (int attempt = 1; attempt <= 40; attempt++) {
+            long bound = attempt <= 7 ? BASE_BACKOFF_MILLIS << (attempt - 1) : MAX_BACKOFF_MILLIS;
+            bound = Math.min(bound, MAX_BACKOFF_MILLIS);
+            for (int i = 0; i < 100; i++) {
+                long backoff = transport.backoffMillis(attempt);
+                assertTrue("attempt " + attempt + ": " + backoff, backoff >= bound / 2);
+                assertTrue("attempt " + attempt + ": " + backoff, backoff <= bound);
+            }
+        }
+    }
+
+    @Test
+    public void backoffJitterSpansLowerAndUpperHalf() {
+        mRandom = new FixedRandom(0, 0.999);
+        ResilientTransport transport = transport(3);
+
+        // Half of the backoff is always waited, the other half is random
+        assertEquals(100, transport.backoffMillis(2));
+        assertEquals(399, transport.backoffMillis(3));
+    }
+
+    @Test
+    public void failedRequestsAreRetriedAfterBackoff() throws IOException {
+        mRandom = new FixedRandom(0, 0);
+        mTransport.fail();
+        mTransport.respond(500);
+        mTransport.respond(200);
+
+        HttpTransport.Response response = transport(3).get(URL, noHeaders(), token());
+
+        assertEquals(200, response.getCode());
+        assertEquals(Arrays.asList(BASE_BACKOFF_MILLIS / 2, BASE_BACKOFF_MILLIS),
+                mClock.mSleeps);
+    }
+
+    @Test
+    public void lastFailureIsThrownAfterMaxAttempts() {
+        mTransport.fail();
+        mTransport.fail();
+        try {
+            transport(2).get(URL, noHeaders(), token());
+            fail("The failure of the last attempt should be thrown");
+        } catch (IOException e) {
+            assertFalse(e instanceof ResilientTransport.UpstreamUnavailableException);
+        }
+        assertEquals(2, mTransport.mRequestTimes.size());
+    }
+
+    @Test
+    public void circuitOpensAfterFailureThreshold() throws IOException {
+        ResilientTransport transport = transport(1);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            mTransport.respond(503);
+            assertEquals(503, transport.get(URL, noHeaders(), token()).getCode());
+        }
+        assertTrue(transport.isFailing());
+
+        try {
+            transport.get(URL, noHeaders(), token());
+            fail("The circuit should be open");
+        } catch (ResilientTransport.UpstreamUnavailableException expected) {
+            // The host is not asked at all
+        }
+        assertEquals(FAILURE_THRESHOLD, mTransport.mRequestTimes.size());
+    }
+
+    @Test
+    public void circuitClosesAfterSuccessfulTrialOnceOpenTimeIsOver() throws IOException {
+        ResilientTransport transport = openCircuit();
+
+        mClock.mNow += OPEN_MILLIS - 1;
+        assertRejected(transport);
+
+        mClock.mNow += 1;
+        mTransport.respond(200);
+        assertEquals(200, transport.get(URL, noHeaders(), token()).getCode());
+        assertFalse(transport.isFailing());
+
+        mTransport.respond(200);
+        assertEquals(200, transport.get(URL, noHeaders(), token()).getCode());
+    }
+
+    @Test
+    public void failedTrialKeepsCircuitOpen() throws IOException {
+        ResilientTransport transport = openCircuit();
+
+        mClock.mNow += OPEN_MILLIS;
+        mTransport.respond(503);
+        assertEquals(503, transport.get(URL, noHeaders(), token()).getCode());
+        assertTrue(transport.isFailing());
+        assertRejected(transport);
+    }
+
+    @Test
+    public void canceledRequestDoesNotEndTheTrialOfAnother() throws Exception {
+        final ResilientTransport transport = transport(1);
+        for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+            mTransport.respond(503);
+            transport.get(URL, noHeaders(), token());
+        }
+
+        // A request let through before the circuit opens, which is canceled during the trial
+        final CancellationToken token = token();
+        final CountDownLatch sent = new CountDownLatch(1);
+        final CountDownLatch canceled = new CountDownLatch(1);
+        mTransport.answer(new Answer() {
+            @Override
+            public HttpTransport.Response answer() throws IOException {
+                sent.countDown();
+                awaitUninterruptibly(canceled);
+                throw new IOException("Canceled");
+            }
+        });
+        final Thread request = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    transport.get(URL, noHeaders(), token);
+                } catch (IOException expected) {
+                    // Canceled
+                }
+            }
+        };
+        request.start();
+        awaitUninterruptibly(sent);
+
+        mTransport.respond(503);
+        transport.get(URL, noHeaders(), token());
+        mClock.mNow += OPEN_MILLIS;
+        mTransport.answer(new Answer() {
+            @Override
+            public HttpTransport.Response answer() throws IOException {
+                token.cancel();
+                canceled.countDown();
+                try {
+                    request.join();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                // The trial is still running, so no other request is let through
+                assertRejected(transport);
+                return new FakeResponse(200, Collections.<String, String>emptyMap());
+            }
+        });
+        assertEquals(200, transport.get(URL, noHeaders(), token()).getCode());
+        assertFalse(transport.isFailing());
+    }
+
+    @Test
+    public void retryAfterOpensCircuitForItsTime() throws IOException {
+        ResilientTransport transport = transport(1);
+        mTransport.respond(429, "Retry-After", "10");
+        assertEquals(429, transport.get(URL, noHeaders(), token()).getCode());
+        assertTrue(transport.isFailing());
+        assertRejected(transport);
+
+        mClock.mNow += 10000;
+        assertFalse(transport.isFailing());
+        mTransport.respond(200);
+        assertEquals(200, transport.get(URL, noHeaders(), token()).getCode());
+    }
+
+    @Test
+    public void budgetDelaysRequestsBeyondBurst() throws IOException {
+        ResilientTransport transport = new ResilientTransport(mTransport, mClock, mRandom, 1,
+                BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS, FAILURE_THRESHOLD, OPEN_MILLIS, 2,
+                1000, 5000);
+        for (int i = 0; i < 4; i++) {
+            mTransport.respond(200);
+            transport.get(URL, noHeaders(), token());
+        }
+
+        // Two requests right away, then one each refill time
+        long start = mTransport.mRequestTimes.get(0);
+        assertEquals(Arrays.asList(start, start, start + 1000, start + 2000),
+                mTransport.mRequestTimes);
+    }
+
+    @Test
+    public void budgetRejectsRequestsThatWouldWaitTooLong() throws IOException {
+        ResilientTransport transport = new ResilientTransport(mTransport, mClock, mRandom, 1,
+                BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS, FAILURE_THRESHOLD, OPEN_MILLIS, 2,
+                1000, 500);
+        for (int i = 0; i < 2; i++) {
+            mTransport.respond(200);
+            transport.get(URL, noHeaders(), token());
+        }
+        assertRejected(transport);
+
+        // Other API keys have budgets of their own, and the budget refills over time
+        mTransport.respond(200);
+        assertEquals(200, transport.get(OTHER_KEY_URL, noHeaders(), token()).getCode());
+        mClock.mNow += 1000;
+        mTransport.respond(200);
+        assertEquals(200, transport.get(URL, noHeaders(), token()).getCode());
+        assertTrue(mClock.mSleeps.isEmpty());
+    }
+
+    private ResilientTransport transport(int maxAttempts) {
+        return new ResilientTransport(mTransport, mClock, mRandom, maxAttempts,
+                BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS, FAILURE_THRESHOLD, OPEN_MILLIS, 100,
+                1000, 5000);
+    }
+
+    /**
+     * Return a transport whose circuit has just been opened by failed requests.
+     */
+    private ResilientTransport openCircuit() throws IOException {
+        ResilientTransport transport = transport(1);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            mTransport.respond(503);
+            transport.get(URL, noHeaders(), token());
+        }
+        return transport;
+    }
+
+    private void assertRejected(ResilientTransport transport) throws IOException {
+        int requests = mTransport.mRequestTimes.size();
+        try {
+            transport.get(URL, noHeaders(), token());
+            fail("The request should be rejected");
+        } catch (ResilientTransport.UpstreamUnavailableException expected) {
+            assertEquals(requests, mTransport.mRequestTimes.size());
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Map<String, String> noHeaders() {
+        return Collections.emptyMap();
+    }
+
+    private static CancellationToken token() {
+        return new CancellationToken();
+    }
+
+    /**
+     * Clock that stands still and moves on by the time of each wait.
+     */
+    private static final class FakeClock implements ResilientTransport.Clock {
+
+        private long mNow;
+        private final List<Long> mSleeps = new ArrayList<>();
+
+        FakeClock(long now) {
+            mNow = now;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+
+        @Override
+        public void sleep(long millis, CancellationToken token) throws InterruptedIOException {
+            token.throwIfCanceled();
+            mSleeps.add(millis);
+            mNow += millis;
+        }
+    }
+
+    /**
+     * Random numbers that repeat the given values.
+     */
+    private static final class FixedRandom extends Random {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] mValues;
+        private int mNext;
+
+        FixedRandom(double... values) {
+            mValues = values;
+        }
+
+        @Override
+        public double nextDouble() {
+            return mValues[mNext++ % mValues.length];
+        }
+    }
+
+    /**
+     * Transport that answers with the scripted responses or failures, in order, and remembers
+     * the time of each request.
+     */
+    private static final class ScriptedTransport implements HttpTransport {
+
+        private final FakeClock mClock;
+        private final ArrayDeque<Object> mResponses = new ArrayDeque<>();
+        private final List<Long> mRequestTimes = new ArrayList<>();
+
+        ScriptedTransport(FakeClock clock) {
+            mClock = clock;
+        }
+
+        void respond(int code, String... headers) {
+            HashMap<String, String> headerMap = new HashMap<>();
+            for (int i = 0; i + 1 < headers.length; i += 2) {
+                headerMap.put(headers[i], headers[i + 1]);
+            }
+            mResponses.add(new FakeResponse(code, headerMap));
+        }
+
+        void fail() {
+            mResponses.add(new IOException("Connection reset"));
+        }
+
+        void answer(Answer answer) {
+            mResponses.add(answer);
+        }
+
+        @Override
+        public Response get(String url, Map<String, String> headers, CancellationToken token)
+                throws IOException {
+            mRequestTimes.add(mClock.mNow);
+            Object next = mResponses.poll();
+            if (next == null) {
+                throw new AssertionError("Unexpected request to " + url);
+            }
+            if (next instanceof IOException) {
+                throw (IOException) next;
+            }
+            if (next instanceof Answer) {
+                return ((Answer) next).answer();
+            }
+            return (Response) next;
+        }
+    }
+
+    /**
+     * Answer of a request that is computed when the request is made.
+     */
+    private interface Answer {
+
+        HttpTransport.Response answer() throws IOException;
+    }
+
+    private static final class FakeResponse implements HttpTransport.Response {
+
+        private final int mCode;
+        private final Map<String, String> mHeaders;
+
+        FakeResponse(int code, Map<String, String> headers) {
+            mCode = code;
+            mHeaders = headers;
+        }
+
+        @Override
+        public int getCode() {
+            return mCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return mHeaders.get(name);
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.android.newsapp;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Assertions on the fields of stories and pages, which have no equals methods of their own.
+ */
+final class StoryAssertions {
+
+    private StoryAssertions() {
+    }
+
+    static void assertPageEquals(StoryPage expected, StoryPage actual) {
+        assertNotNull(actual);
+        assertEquals("current page", expected.getCurrentPage(), actual.getCurrentPage());
+        assertEquals("pages", expected.getPages(), actual.getPages());
+        assertStoriesEqual(expected.getStories(), actual.getStories());
+    }
+
+    static void assertStoriesEqual(List<Story> expected, List<Story> actual) {
+        assertEquals("number of stories", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertStoryEquals("story " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    static void assertStoryEquals(String message, Story expected, Story actual) {
+        assertEquals(message + " title", expected.getTitle(), actual.getTitle());
+        assertEquals(message + " authors", expected.getAuthors(), actual.getAuthors());
+        assertEquals(message + " date", expected.getTimeInMillis(), actual.getTimeInMillis());
+        assertEquals(message + " url", expected.getUrl(), actual.getUrl());
+        assertEquals(message + " section id", expected.getSectionId(), actual.getSectionId());
+        assertEquals(message + " section", expected.getSection(), actual.getSection());
+        assertEquals(message + " thumbnail", expected.getThumnailUrl(),
+                actual.getThumnailUrl());
+    }
+}
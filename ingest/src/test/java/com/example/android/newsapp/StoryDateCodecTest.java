@@ -0,0 +1,149 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that {@link StoryDateCodec} parses and formats dates like {@link SimpleDateFormat}.
+ */
+public class StoryDateCodecTest {
+
+    private static final String PUBLICATION_DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+    private static final String DISPLAY_DATE_PATTERN = "dd. MMM, yyyy";
+    private static final String QUERY_DATE_PATTERN = "yyyy-MM-dd";
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    /**
+     * Range of the random dates, from 1900 to 2200 in epoch seconds. Before 1582 the
+     * SimpleDateFormat uses the julian calendar, the codec the gregorian one.
+     */
+    private static final long MIN_SECONDS = -2208988800L;
+    private static final long MAX_SECONDS = 7258118400L;
+
+    private static final int SAMPLES = 20000;
+
+    private static final String[] EDGE_DATES = {"1970-01-01T00:00:00Z", "1969-12-31T23:59:59Z",
+            "1900-03-01T00:00:00Z", "2000-02-29T12:00:00Z", "2016-02-29T23:59:59Z",
+            "2017-12-31T23:59:59Z", "2038-01-19T03:14:08Z", "2100-02-28T00:00:00Z",
+            "9999-12-31T23:59:59Z"};
+
+    private static final String[] MALFORMED_DATES = {null, "", "2017-07-03", "2017-07-03T13:58Z",
+            "2017-07-03 13:58:27Z", "2017-07-03T13:58:27", "2017-07-03T13:58:27+01",
+            "2017-02-29T10:00:00Z", "1900-02-29T10:00:00Z", "2017-13-01T10:00:00Z",
+            "2017-00-01T10:00:00Z", "2017-04-31T10:00:00Z", "2017-07-00T10:00:00Z",
+            "2017-07-03T24:00:00Z", "2017-07-03T13:60:00Z", "2017-07-03T13:58:60Z",
+            "2017-0a-03T13:58:27Z", "+017-07-03T13:58:27Z", "2017-07-03T-1:58:27Z"};
+
+    private Locale mDefaultLocale;
+    private TimeZone mDefaultTimeZone;
+
+    @Before
+    public void rememberDefaults() {
+        mDefaultLocale = Locale.getDefault();
+        mDefaultTimeZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void restoreDefaults() {
+        Locale.setDefault(mDefaultLocale);
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+    @Test
+    public void publicationDatesParseLikeSimpleDateFormat() throws ParseException {
+        SimpleDateFormat format = format(PUBLICATION_DATE_PATTERN, Locale.US, UTC);
+        Random random = new Random(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            String date = format.format(new Date(randomSeconds(random) * 1000));
+            assertEquals(date, format.parse(date).getTime(),
+                    StoryDateCodec.parsePublicationDate(date));
+        }
+        for (String date : EDGE_DATES) {
+            assertEquals(date, format.parse(date).getTime(),
+                    StoryDateCodec.parsePublicationDate(date));
+        }
+    }
+
+    @Test
+    public void malformedPublicationDatesAreRejected() {
+        // Stricter than SimpleDateFormat, which ignores what follows a date and is lenient
+        // about the number of digits
+        for (String date : MALFORMED_DATES) {
+            assertEquals(date, StoryDateCodec.NO_DATE, StoryDateCodec.parsePublicationDate(date));
+        }
+    }
+
+    @Test
+    public void displayDatesFormatLikeSimpleDateFormat() {
+        Locale[] locales = {Locale.US, Locale.GERMANY, Locale.FRANCE, new Locale("es", "ES")};
+        String[] timeZones = {"UTC", "Europe/London", "America/Los_Angeles", "Asia/Kolkata",
+                "Pacific/Chatham", "Pacific/Kiritimati"};
+        Random random = new Random(2);
+        for (Locale locale : locales) {
+            for (String timeZoneId : timeZones) {
+                TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+                Locale.setDefault(locale);
+                TimeZone.setDefault(timeZone);
+                SimpleDateFormat format = format(DISPLAY_DATE_PATTERN, locale, timeZone);
+                for (int i = 0; i < SAMPLES / 20; i++) {
+                    long millis = randomSeconds(random) * 1000 + random.nextInt(1000);
+                    assertEquals(locale + " " + timeZoneId + " " + millis,
+                            format.format(new Date(millis)),
+                            StoryDateCodec.formatDisplayDate(millis));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void queryDatesFormatAndParseLikeSimpleDateFormat() throws ParseException {
+        SimpleDateFormat format = format(QUERY_DATE_PATTERN, Locale.US, UTC);
+        Random random = new Random(3);
+        for (int i = 0; i < SAMPLES; i++) {
+            long millis = randomSeconds(random) * 1000 + random.nextInt(1000);
+            String date = format.format(new Date(millis));
+            assertEquals(String.valueOf(millis), date, StoryDateCodec.formatQueryDate(millis));
+
+            long startOfDay = format.parse(date).getTime();
+            assertEquals(date, startOfDay, StoryDateCodec.parseStartOfDay(date));
+            assertEquals(date, startOfDay + 24 * 60 * 60 * 1000 - 1,
+                    StoryDateCodec.parseEndOfDay(date));
+        }
+        assertEquals(StoryDateCodec.NO_DATE, StoryDateCodec.parseStartOfDay("2017-02-29"));
+        assertEquals(StoryDateCodec.NO_DATE, StoryDateCodec.parseEndOfDay("2017-7-3"));
+        assertEquals(StoryDateCodec.NO_DATE, StoryDateCodec.parseEndOfDay(null));
+    }
+
+    @Test
+    public void floorDivRoundsTowardsNegativeInfinity() {
+        assertEquals(2, StoryDateCodec.floorDiv(7, 3));
+        assertEquals(-3, StoryDateCodec.floorDiv(-7, 3));
+        assertEquals(-3, StoryDateCodec.floorDiv(7, -3));
+        assertEquals(2, StoryDateCodec.floorDiv(-7, -3));
+        assertEquals(-2, StoryDateCodec.floorDiv(-6, 3));
+        assertEquals(-1, StoryDateCodec.floorDiv(-1, 1000));
+        assertEquals(0, StoryDateCodec.floorDiv(0, 1000));
+    }
+
+    private static long randomSeconds(Random random) {
+        return MIN_SECONDS + (long) (random.nextDouble() * (MAX_SECONDS - MIN_SECONDS));
+    }
+
+    private static SimpleDateFormat format(String pattern, Locale locale, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+        format.setTimeZone(timeZone);
+        format.setLenient(false);
+        return format;
+    }
+}
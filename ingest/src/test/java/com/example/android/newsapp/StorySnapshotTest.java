@@ -0,0 +1,172 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.android.newsapp.StoryAssertions.assertPageEquals;
+import static com.example.android.newsapp.StoryAssertions.assertStoryEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that a {@link StorySnapshot} gives back the page it was written from, and that a
+ * corrupt snapshot is rejected with an {@link IOException} instead of any other failure.
+ */
+public class StorySnapshotTest {
+
+    private static final int CORRUPTIONS = 20000;
+
+    @Test
+    public void pageIsReadBack() throws IOException {
+        StoryPage page = page(new Random(1), 25, "\"a1b2\"", "Mon, 03 Jul 2017 13:58:27 GMT");
+
+        StoryPage read = StorySnapshot.read(StorySnapshot.write(page));
+
+        assertPageEquals(page, read);
+        assertEquals(page.getETag(), read.getETag());
+        assertEquals(page.getLastModified(), read.getLastModified());
+    }
+
+    @Test
+    public void pageWithoutStoriesOrValidatorsIsReadBack() throws IOException {
+        StoryPage page = new StoryPage(Collections.<Story>emptyList(), 0, 0);
+
+        StoryPage read = StorySnapshot.read(StorySnapshot.write(page));
+
+        assertPageEquals(page, read);
+        assertNull(read.getETag());
+        assertNull(read.getLastModified());
+    }
+
+    @Test
+    public void storiesWithoutOptionalFieldsAreReadBack() throws IOException {
+        List<Story> stories = Arrays.asList(
+                new Story("No date", new String[0], StoryDateCodec.NO_DATE,
+                        "https://www.theguardian.com/a", null, "World news", null),
+                new Story("Before the epoch", new String[]{"A", "B", "A"}, -86400000L,
+                        "https://www.theguardian.com/b", "world", "World news", ""),
+                new Story("", new String[]{""}, 0, "", "", "", "https://media.guim.co.uk/c"));
+        StoryPage page = new StoryPage(stories, 1, 1, "", null);
+
+        StoryPage read = StorySnapshot.read(StorySnapshot.write(page));
+
+        assertPageEquals(page, read);
+        assertEquals("", read.getETag());
+        assertFalse(read.getStories().get(0).hasDate());
+    }
+
+    @Test
+    public void singleStoriesAreDecodedOnTheirOwn() throws IOException {
+        StoryPage page = page(new Random(2), 40, null, null);
+        StorySnapshot.Reader reader = new StorySnapshot.Reader(StorySnapshot.write(page));
+
+        assertEquals(40, reader.getStoryCount());
+        for (int index : new int[]{39, 0, 17, 17, 1}) {
+            assertStoryEquals("story " + index, page.getStories().get(index),
+                    reader.getStory(index));
+        }
+    }
+
+    @Test
+    public void namesAreShared() throws IOException {
+        StoryPage page = page(new Random(3), 30, null, null);
+
+        List<Story> stories = StorySnapshot.read(StorySnapshot.write(page)).getStories();
+
+        for (Story story : stories) {
+            for (Story other : stories) {
+                if (story.getSection().equals(other.getSection())) {
+                    assertSame(story.getSection(), other.getSection());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void otherDataIsRejected() {
+        assertRejected(new byte[0]);
+        assertRejected("NSN".getBytes(Charset.forName("UTF-8")));
+        assertRejected("{\"response\":{\"status\":\"ok\"}}".getBytes(Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void otherVersionIsRejected() {
+        byte[] snapshot = StorySnapshot.write(page(new Random(4), 3, null, null));
+        snapshot[4] = (byte) (StorySnapshot.VERSION + 1);
+        assertRejected(snapshot);
+    }
+
+    @Test
+    public void truncatedSnapshotIsRejected() {
+        byte[] snapshot = StorySnapshot.write(page(new Random(5), 10, "\"e\"", null));
+        for (int length = 0; length < snapshot.length; length++) {
+            assertRejected(Arrays.copyOf(snapshot, length));
+        }
+    }
+
+    @Test
+    public void negativeReferenceIsRejected() throws IOException {
+        StoryPage page = StorySnapshot.read(authorSnapshot(new byte[]{1}));
+        assertEquals(Collections.singletonList("A"), page.getStories().get(0).getAuthors());
+
+        // Ten bytes set the sign bit of the varint, this one is -1
+        assertRejected(authorSnapshot(new byte[]{-1, -1, -1, -1, -1, -1, -1, -1, -1, 1}));
+    }
+
+    @Test
+    public void corruptSnapshotIsRejectedOrRead() {
+        byte[] snapshot = StorySnapshot.write(page(new Random(6), 10, "\"e\"", null));
+        Random random = new Random(7);
+        for (int i = 0; i < CORRUPTIONS; i++) {
+            byte[] corrupt = snapshot.clone();
+            for (int flips = 1 + random.nextInt(3); flips > 0; flips--) {
+                corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt(256);
+            }
+            try {
+                StorySnapshot.read(corrupt);
+            } catch (IOException expected) {
+                // Rejected, the page is fetched again
+            } catch (RuntimeException e) {
+                throw new AssertionError("Corruption " + i + " failed with " + e, e);
+            }
+        }
+    }
+
+    private static void assertRejected(byte[] snapshot) {
+        try {
+            StorySnapshot.read(snapshot);
+            fail("A snapshot of " + snapshot.length + " bytes should be rejected");
+        } catch (IOException expected) {
+            // Rejected
+        }
+    }
+
+    /**
+     * Return the snapshot of a story by one author, the one of the string table, with the given
+     * varint as the reference to the author.
+     */
+    private static byte[] authorSnapshot(byte[] reference) {
+        byte[] head = {'N', 'S', 'N', 'P', StorySnapshot.VERSION, 1, 1, 0, 0,
+                1, 2, 'A', 1, 0, 0, 0, 0, 2, 'T', 1};
+        byte[] snapshot = Arrays.copyOf(head, head.length + reference.length + 5);
+        System.arraycopy(reference, 0, snapshot, head.length, reference.length);
+        return snapshot;
+    }
+
+    private static StoryPage page(Random random, int stories, String eTag, String lastModified) {
+        ArrayList<Story> storyList = new ArrayList<>(
+                StoryStreamParserTest.randomStories(random, stories));
+        return new StoryPage(storyList, 1 + random.nextInt(100), 100 + random.nextInt(10000),
+                eTag, lastModified);
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.android.newsapp;
+
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static com.example.android.newsapp.StoryAssertions.assertPageEquals;
+import static com.example.android.newsapp.StoryAssertions.assertStoriesEqual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that the {@link StoryStreamParser} reads the same pages as the legacy JSONObject parser
+ * of {@link QueryUtils}, and the stories of a response written from known stories.
+ */
+public class StoryStreamParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void recordedResponseMatchesLegacyParser() throws IOException {
+        String json = readResource("search-response.json");
+
+        StoryPage page = parse(json);
+
+        assertPageEquals(QueryUtils.extractStoryFeatureFromJson(json), page);
+        assertEquals(3, page.getCurrentPage());
+        assertEquals(6330, page.getPages());
+        assertEquals(4, page.getStories().size());
+
+        Story first = page.getStories().get(0);
+        assertEquals(Arrays.asList("Anushka Asthana", "Jessica Elgot"), first.getAuthors());
+        assertEquals("https://media.guim.co.uk/3f2a/500.jpg", first.getThumnailUrl());
+        assertEquals(1499090307000L, first.getTimeInMillis());
+
+        Story liveBlog = page.getStories().get(1);
+        assertEquals("G20 summit: \"The world is watching\" \u2013 live", liveBlog.getTitle());
+        assertEquals(0, liveBlog.getAuthorCount());
+        assertNull(liveBlog.getThumnailUrl());
+
+        Story culture = page.getStories().get(2);
+        assertNull(culture.getSectionId());
+        assertEquals("F\u00eate de la musique: caf\u00e9s, ch\u00e2teaux and \ud83c\udfb8"
+                + " on every corner", culture.getTitle());
+
+        assertEquals("Leap day\\nspecial", page.getStories().get(3).getTitle());
+    }
+
+    @Test
+    public void writtenStoriesAreReadBack() throws IOException {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            List<Story> stories = randomStories(random, random.nextInt(30));
+            String json = searchResponse(stories, round + 1, 40, true);
+
+            StoryPage page = parse(json);
+
+            assertEquals(round + 1, page.getCurrentPage());
+            assertEquals(40, page.getPages());
+            assertStoriesEqual(stories, page.getStories());
+            assertPageEquals(QueryUtils.extractStoryFeatureFromJson(json), page);
+        }
+    }
+
+    @Test
+    public void resultsBeforeStatusMatchLegacyParser() throws IOException {
+        List<Story> stories = randomStories(new Random(11), 5);
+        String json = searchResponse(stories, 1, 1, false);
+
+        StoryPage page = parse(json);
+
+        assertStoriesEqual(stories, page.getStories());
+        assertPageEquals(QueryUtils.extractStoryFeatureFromJson(json), page);
+    }
+
+    @Test
+    public void truncatedBodyKeepsStoriesAfterOkStatus() throws IOException {
+        List<Story> stories = randomStories(new Random(13), 5);
+
+        StoryPage page = parse(truncatedInThirdStory(stories, true));
+
+        assertStoriesEqual(stories.subList(0, 2), page.getStories());
+        assertEquals(2, page.getCurrentPage());
+        assertEquals(9, page.getPages());
+    }
+
+    @Test
+    public void truncatedBodyDropsStoriesBeforeStatus() throws IOException {
+        List<Story> stories = randomStories(new Random(13), 5);
+
+        // The status never came, so the stories read so far do not count
+        assertEmptyPage(parse(truncatedInThirdStory(stories, false)));
+    }
+
+    @Test
+    public void listenerGetsEveryStoryInOrder() throws IOException {
+        String json = readResource("search-response.json");
+        final ArrayList<Story> parsed = new ArrayList<>();
+
+        StoryPage page = StoryStreamParser.parse(stream(json),
+                new StoryStreamParser.OnStoryParsedListener() {
+                    @Override
+                    public void onStoryParsed(Story story) {
+                        parsed.add(story);
+                    }
+                });
+
+        assertEquals(page.getStories(), parsed);
+    }
+
+    @Test
+    public void badStatusGivesEmptyPageLikeLegacyParser() throws IOException {
+        String json = "{\"response\":{\"results\":[" + storyJson(randomStories(new Random(3), 1))
+                + "],\"status\":\"error\",\"currentPage\":2,\"pages\":5}}";
+
+        assertEmptyPage(parse(json));
+        assertEmptyPage(QueryUtils.extractStoryFeatureFromJson(json));
+    }
+
+    @Test
+    public void htmlBodyGivesEmptyPageLikeLegacyParser() throws IOException {
+        String html = "<html><body><h1>504 Gateway Time-out</h1></body></html>";
+
+        assertEmptyPage(parse(html));
+        assertEmptyPage(QueryUtils.extractStoryFeatureFromJson(html));
+    }
+
+    @Test
+    public void emptyBodyGivesNoPageLikeLegacyParser() throws IOException {
+        assertNull(parse(""));
+        assertNull(QueryUtils.extractStoryFeatureFromJson(""));
+    }
+
+    @Test
+    public void storyWithoutTitleEndsPageLikeLegacyParser() throws IOException {
+        String json = readResource("search-response.json")
+                .replace("\"webTitle\": \"G20 summit", "\"headline\": \"G20 summit");
+
+        StoryPage page = parse(json);
+
+        assertPageEquals(QueryUtils.extractStoryFeatureFromJson(json), page);
+        assertEquals(1, page.getStories().size());
+    }
+
+    private static void assertEmptyPage(StoryPage page) {
+        assertNotNull(page);
+        assertEquals(0, page.getStories().size());
+        assertEquals(0, page.getCurrentPage());
+        assertEquals(0, page.getPages());
+    }
+
+    /**
+     * Return a search response of the given stories that is cut off in the middle of the URL of
+     * the third story.
+     */
+    private static String truncatedInThirdStory(List<Story> stories, boolean statusFirst)
+            throws IOException {
+        String json = searchResponse(stories, 2, 9, statusFirst);
+        return json.substring(0, json.indexOf(stories.get(2).getUrl()) + 10);
+    }
+
+    private static StoryPage parse(String json) throws IOException {
+        return StoryStreamParser.parse(stream(json), null);
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(UTF_8));
+    }
+
+    static String readResource(String name) throws IOException {
+        InputStream input = StoryStreamParserTest.class.getClassLoader().getResourceAsStream(name);
+        assertNotNull(name, input);
+        return QueryUtils.readFromStream(input);
+    }
+
+    /**
+     * Return stories with titles that need escaping, and without some of the optional fields.
+     */
+    static List<Story> randomStories(Random random, int count) {
+        String[] sections = {"politics", "world", "sport", "culture"};
+        String[] titleParts = {"Vote", "\"quoted\"", "back\\slash", "tab\there", "line\nbreak",
+                "\u00dcn\u00efc\u00f6d\u00e9", "\u00e9t\u00e9", "\ud83d\udcf0", "</script>",
+                "\u0001"};
+        String[] authors = {"Anushka Asthana", "Jessica Elgot", "Heather Stewart", "O'Neill"};
+
+        ArrayList<Story> stories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int part = random.nextInt(4); part >= 0; part--) {
+                title.append(titleParts[random.nextInt(titleParts.length)]).append(' ');
+            }
+            String[] storyAuthors = new String[random.nextInt(3)];
+            for (int j = 0; j < storyAuthors.length; j++) {
+                storyAuthors[j] = authors[random.nextInt(authors.length)];
+            }
+            String sectionId = sections[random.nextInt(sections.length)];
+            long seconds = 946684800L + (long) random.nextInt(Integer.MAX_VALUE / 4);
+            stories.add(new Story(title.toString().trim(), storyAuthors, seconds * 1000,
+                    "https://www.theguardian.com/" + sectionId + "/" + i,
+                    random.nextInt(5) == 0 ? null : sectionId,
+                    Character.toUpperCase(sectionId.charAt(0)) + sectionId.substring(1),
+                    random.nextBoolean() ? null : "https://media.guim.co.uk/" + i + ".jpg"));
+        }
+        return stories;
+    }
+
+    /**
+     * Return a guardian search response of the given stories, with the status before or after
+     * the results.
+     */
+    static String searchResponse(List<Story> stories, int currentPage, int pages,
+                                 boolean statusFirst) throws IOException {
+        String status = "\"status\":\"ok\"";
+        return "{\"response\":{" + (statusFirst ? status + "," : "")
+                + "\"userTier\":\"developer\",\"currentPage\":" + currentPage
+                + ",\"pages\":" + pages + ",\"results\":[" + storyJson(stories) + "]"
+                + (statusFirst ? "" : "," + status) + "}}";
+    }
+
+    private static String storyJson(List<Story> stories) throws IOException {
+        StringWriter json = new StringWriter();
+        JsonWriter writer = new JsonWriter(json);
+        writer.beginArray();
+        for (Story story : stories) {
+            writer.beginObject();
+            writer.name("id").value(story.getUrl().substring(28));
+            if (story.getSectionId() != null) {
+                writer.name("sectionId").value(story.getSectionId());
+            }
+            writer.name("sectionName").value(story.getSection());
+            writer.name("webPublicationDate").value(publicationDate(story.getTimeInMillis()));
+            writer.name("webTitle").value(story.getTitle());
+            writer.name("webUrl").value(story.getUrl());
+            if (story.getThumnailUrl() != null) {
+                writer.name("fields").beginObject()
+                        .name("thumbnail").value(story.getThumnailUrl())
+                        .endObject();
+            }
+            writer.name("tags").beginArray();
+            for (String author : story.getAuthors()) {
+                writer.beginObject()
+                        .name("type").value("contributor")
+                        .name("webTitle").value(author)
+                        .endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.close();
+
+        // Only the elements, the caller writes the brackets
+        String array = json.toString();
+        return array.substring(1, array.length() - 1);
+    }
+
+    private static String publicationDate(long timeInMillis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(timeInMillis));
+    }
+}